@@ -0,0 +1,147 @@
+package com.borisbordeaux.arsudokusolver.classifier;
+
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.borisbordeaux.arsudokusolver.utils.log.AndroidLogger;
+import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.dnn.Dnn;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Compares the accuracy and the latency of the classifiers on the
+ * cell images of the pictures directory, results are written in the logs
+ */
+@RunWith(AndroidJUnit4.class)
+public class ClassifierBenchmark {
+
+    private static final String TAG = "ClassifierBenchmark";
+    private static final ILogger mLogger = new AndroidLogger();
+
+    //number of classifications of each image, to average the latency
+    private static final int NB_RUNS = 50;
+
+    //the cell images and the number they contain
+    private static final String[] IMAGES = {
+            "0.jpg", "1.jpg", "2.jpg", "3.jpg", "4.jpg", "5.jpg", "6.jpg",
+            "1_noisy.jpg", "2_noisy.jpg", "3_noisy.jpg", "4_noisy.jpg", "5_noisy.jpg", "6_noisy.jpg"
+    };
+    private static final int[] LABELS = {
+            0, 5, 0, 0, 3, 1, 6,
+            3, 5, 0, 7, 0, 0
+    };
+
+    //the dnn configs to compare
+    private static final DnnConfig[] CONFIGS = {
+            DnnConfig.DEFAULT,
+            new DnnConfig(DnnConfig.Model.FLOAT32, Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_CPU),
+            new DnnConfig(DnnConfig.Model.FLOAT32, Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_OPENCL),
+            new DnnConfig(DnnConfig.Model.FLOAT32, Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_OPENCL_FP16),
+            new DnnConfig(DnnConfig.Model.FLOAT32, Dnn.DNN_BACKEND_VKCOM, Dnn.DNN_TARGET_VULKAN),
+            new DnnConfig(DnnConfig.Model.FLOAT16, Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_CPU),
+            new DnnConfig(DnnConfig.Model.FLOAT16, Dnn.DNN_BACKEND_OPENCV, Dnn.DNN_TARGET_OPENCL_FP16)
+    };
+
+    private static final Mat[] sImages = new Mat[IMAGES.length];
+
+    @BeforeClass
+    public static void loadImages() throws IOException {
+        assertTrue(OpenCVLoader.initDebug());
+
+        //the images are in the assets of the test application
+        Context testContext = InstrumentationRegistry.getInstrumentation().getContext();
+        for (int i = 0; i < IMAGES.length; i++) {
+            try (InputStream is = testContext.getAssets().open(IMAGES[i])) {
+                MatOfByte buffer = new MatOfByte(is.readAllBytes());
+                sImages[i] = Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_GRAYSCALE);
+                buffer.release();
+            }
+        }
+    }
+
+    @AfterClass
+    public static void releaseImages() {
+        for (Mat img : sImages) {
+            if (img != null) {
+                img.release();
+            }
+        }
+    }
+
+    @Test
+    public void compareDnnConfigs() {
+        //the models are in the assets of the application
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+        for (DnnConfig config : CONFIGS) {
+            TensorFlowNumberClassifier classifier = new TensorFlowNumberClassifier(appContext, config);
+            if (classifier.loadAssets()) {
+                classifier.warmUp();
+                benchmark(config.toString(), classifier);
+            } else {
+                mLogger.log(TAG, config + ": model not available");
+            }
+        }
+    }
+
+    @Test
+    public void compareLightClassifier() {
+        long start = System.nanoTime();
+        Mat samples = new Mat();
+        Mat responses = new Mat();
+        KNearestNumberClassifier.createTrainingSet(samples, responses);
+        KNearestNumberClassifier classifier = new KNearestNumberClassifier();
+        assertTrue(classifier.train(samples, responses));
+        mLogger.log(TAG, String.format("kNN trained on %d digits in %.1f ms", samples.rows(), (System.nanoTime() - start) / 1e6));
+
+        benchmark("kNN", classifier);
+
+        //compared to the default dnn config
+        Context appContext = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        TensorFlowNumberClassifier dnn = new TensorFlowNumberClassifier(appContext);
+        assertTrue(dnn.loadAssets());
+        dnn.warmUp();
+        benchmark("dnn", dnn);
+
+        classifier.release();
+        samples.release();
+        responses.release();
+    }
+
+    /**
+     * Classifies all images with the given classifier and logs the accuracy and the mean latency
+     *
+     * @param name       the name of the classifier in the logs
+     * @param classifier the classifier to benchmark
+     */
+    private void benchmark(String name, INumberClassifier classifier) {
+        int correct = 0;
+        long start = System.nanoTime();
+        for (int run = 0; run < NB_RUNS; run++) {
+            for (int i = 0; i < sImages.length; i++) {
+                int number = classifier.getNumber(sImages[i]);
+                if (run == 0 && number == LABELS[i]) {
+                    correct++;
+                }
+            }
+        }
+        double latencyMs = (System.nanoTime() - start) / 1e6 / (NB_RUNS * sImages.length);
+
+        mLogger.log(TAG, String.format("%s: accuracy %d/%d, %.3f ms per cell", name, correct, sImages.length, latencyMs));
+    }
+}
@@ -3,8 +3,10 @@ package com.borisbordeaux.arsudokusolver;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.view.Gravity;
+import android.view.View;
 import android.widget.Button;
 import android.widget.ImageView;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
@@ -18,35 +20,33 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.borisbordeaux.arsudokusolver.analyzer.ImageAnalyzer;
-import com.borisbordeaux.arsudokusolver.classifier.TensorFlowNumberClassifier;
-import com.borisbordeaux.arsudokusolver.utils.log.ConsoleLogger;
-import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
+import com.borisbordeaux.arsudokusolver.classifier.DnnConfig;
+import com.borisbordeaux.arsudokusolver.classifier.INumberClassifier;
+import com.borisbordeaux.arsudokusolver.startup.StartupOrchestrator;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import org.opencv.android.OpenCVLoader;
-
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 public class MainActivity extends AppCompatActivity {
 
-    //the tag for debug logs
-    private static final String TAG = "MainActivityOpenCV";
-    private static final ILogger mLogger = new ConsoleLogger();
+    //number of models used to classify the cells in parallel
+    private static final int CLASSIFIER_POOL_SIZE = Runtime.getRuntime().availableProcessors();
 
-    //load opencv statically
-    static {
-        if (OpenCVLoader.initDebug(true)) {
-            mLogger.log(TAG, "OpenCV is configured or connected successfully");
-        } else {
-            mLogger.log(TAG, "OpenCV not working or loaded");
-        }
-    }
+    //the model used to classify the cells and the dnn backend to run it
+    private static final DnnConfig CLASSIFIER_CONFIG = DnnConfig.DEFAULT;
 
     //all required permissions (here only camera)
     private final String[] REQUIRED_PERMISSIONS = new String[]{"android.permission.CAMERA"};
 
+    //loads opencv and the classifier in background
+    private StartupOrchestrator mStartup;
+
     //the image analyzer to analyse the image in preview
+    //created once opencv is loaded
     private ImageAnalyzer mAnalyzer;
+    private CompletableFuture<ImageAnalyzer> mAnalyzerCreated;
 
     //preview of the camera
     private ImageView mPreviewView;
@@ -60,6 +60,19 @@ public class MainActivity extends AppCompatActivity {
     //the switch to switch on or switch off the torch
     private SwitchCompat mTorchSwitch;
 
+    //the switch to use the lightweight classifier instead of the dnn one
+    private SwitchCompat mLightClassifierSwitch;
+
+    //the switch to read and solve the grids without pressing the scan button
+    private SwitchCompat mAutoScanSwitch;
+
+    //the classifiers the user can choose, null until loaded
+    private INumberClassifier mDnnClassifier;
+    private INumberClassifier mLightClassifier;
+
+    //displays the state of the startup
+    private TextView mStatusView;
+
     /**
      * {@inheritDoc}
      * Called 1 time when app opens, init the app
@@ -73,6 +86,19 @@ public class MainActivity extends AppCompatActivity {
         //set the layout of the main activity
         setContentView(R.layout.activity_main);
 
+        //get the widgets in the view
+        mPreviewView = findViewById(R.id.previewView);
+        mButtonScan = findViewById(R.id.analyze);
+        mTorchSwitch = findViewById(R.id.torch_switch);
+        mLightClassifierSwitch = findViewById(R.id.light_classifier_switch);
+        mAutoScanSwitch = findViewById(R.id.auto_scan_switch);
+        mStatusView = findViewById(R.id.status);
+
+        //load opencv and the model while the permissions are asked and the camera is bound
+        mStartup = new StartupOrchestrator(getApplicationContext(), CLASSIFIER_POOL_SIZE, CLASSIFIER_CONFIG,
+                getMainExecutor(), this::onStartupStateChanged);
+        mStartup.start();
+
         //continue initialization if all permissions granted
         if (allPermissionsGranted()) {
             init();
@@ -84,6 +110,25 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * Called when the app is no more visible, the recording is saved
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (mAnalyzer != null && mAnalyzer.isRecording()) {
+            mAnalyzer.stopRecording();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        //the workers of the classifiers would outlive the activity
+        mStartup.shutdown();
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -145,7 +190,8 @@ public class MainActivity extends AppCompatActivity {
 
                 //build the imageAnalysis
                 ImageAnalysis imageAnalysis = builder
-                        //set the resolution of the view
+                        //set the resolution of the view, the analyzer downscales it to a size adapted
+                        //to the speed of the device, bigger frames would cost more to convert and record
                         .setTargetResolution(new android.util.Size(400, 400))
                         //set image format
                         .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
@@ -154,13 +200,15 @@ public class MainActivity extends AppCompatActivity {
                         //the executor receives the last available frame from the camera at the time that the analyze() method is called
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                         .build();
-                //sets the analyzer
-                imageAnalysis.setAnalyzer(getMainExecutor(), mAnalyzer);
 
                 // Attach use cases to the camera with the same lifecycle owner
                 mCamera = cameraProvider.bindToLifecycle(this, cameraSelector, imageAnalysis);
 
-                setListeners();
+                //sets the analyzer as soon as it can analyze images
+                mAnalyzerCreated.thenAcceptAsync(analyzer -> {
+                    imageAnalysis.setAnalyzer(getMainExecutor(), analyzer);
+                    setListeners();
+                }, getMainExecutor());
 
             } catch (InterruptedException | ExecutionException e) {
                 // Currently no exceptions thrown. cameraProviderFuture.get() should
@@ -179,6 +227,12 @@ public class MainActivity extends AppCompatActivity {
         //scan the image on click
         mButtonScan.setOnClickListener(view -> mAnalyzer.rescan());
 
+        //record the camera frames on long click, to replay them on desktop
+        mButtonScan.setOnLongClickListener(view -> {
+            toggleRecording();
+            return true;
+        });
+
         //change between display intermediate output
         //and processed image output with results
         mPreviewView.setOnLongClickListener(view -> {
@@ -187,38 +241,105 @@ public class MainActivity extends AppCompatActivity {
         });
 
         mTorchSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> mCamera.getCameraControl().enableTorch(isChecked));
+
+        mLightClassifierSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> updateClassifier());
+
+        //the switch may have been turned on before the analyzer existed
+        mAnalyzer.setAutoScan(mAutoScanSwitch.isChecked());
+        mAutoScanSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> mAnalyzer.setAutoScan(isChecked));
     }
 
     /**
-     * Loads the tensorflow model classifier
+     * Starts or stops the recording of the camera frames, the recordings
+     * are written in the app folder of the external storage
      */
-    private void loadTensorflow() {
-        TensorFlowNumberClassifier nc = new TensorFlowNumberClassifier(getBaseContext());
-
-        Toast t = Toast.makeText(getBaseContext(), "", Toast.LENGTH_SHORT);
-        t.setGravity(Gravity.CENTER_VERTICAL | Gravity.CENTER_HORIZONTAL, 0, 0);
-
-        if (nc.loadAssets()) {
-            mAnalyzer.setNumberClassifier(nc);
-            t.setText(R.string.tensorflow);
+    private void toggleRecording() {
+        if (mAnalyzer.isRecording()) {
+            mAnalyzer.stopRecording();
+            Toast.makeText(this, R.string.recording_stopped, Toast.LENGTH_SHORT).show();
         } else {
-            t.setText(R.string.error);
+            File file = new File(getExternalFilesDir(null), "session_" + System.currentTimeMillis() + ".frames");
+            if (mAnalyzer.startRecording(file)) {
+                Toast.makeText(this, R.string.recording_started, Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, R.string.error, Toast.LENGTH_SHORT).show();
+            }
+        }
+    }
+
+    /**
+     * Gives the classifier chosen by the user to the analyzer, if it is loaded
+     */
+    private void updateClassifier() {
+        INumberClassifier classifier = mLightClassifierSwitch.isChecked() ? mLightClassifier : mDnnClassifier;
+        if (mAnalyzer != null && classifier != null) {
+            mAnalyzer.setNumberClassifier(classifier);
         }
+    }
 
-        t.show();
+    /**
+     * Called on the UI thread each time the startup reaches a new state,
+     * the scan is enabled only once a classifier is ready
+     *
+     * @param state the new state of the startup
+     */
+    private void onStartupStateChanged(StartupOrchestrator.State state) {
+        mButtonScan.setEnabled(state == StartupOrchestrator.State.READY || state == StartupOrchestrator.State.LIGHT_ONLY);
+
+        switch (state) {
+            case LOADING_NATIVE:
+                mStatusView.setText(R.string.loading_native);
+                break;
+            case LOADING_MODEL:
+                mStatusView.setText(R.string.loading_model);
+                break;
+            case WARMING_UP:
+                mStatusView.setText(R.string.warming_up);
+                break;
+            case LIGHT_ONLY:
+                //the dnn classifier is not available, the user cannot switch to it
+                mLightClassifierSwitch.setChecked(true);
+                mLightClassifierSwitch.setEnabled(false);
+                updateClassifier();
+                //falls through, the status is hidden as for the other final states
+            case READY:
+            case FAILED:
+                mStatusView.setVisibility(View.GONE);
+
+                Toast t = Toast.makeText(getBaseContext(), "", Toast.LENGTH_SHORT);
+                t.setGravity(Gravity.CENTER_VERTICAL | Gravity.CENTER_HORIZONTAL, 0, 0);
+                if (state == StartupOrchestrator.State.READY) {
+                    t.setText(R.string.tensorflow);
+                } else if (state == StartupOrchestrator.State.LIGHT_ONLY) {
+                    t.setText(R.string.light_only);
+                } else {
+                    t.setText(R.string.error);
+                }
+                t.show();
+                break;
+        }
     }
 
     /**
-     * Init the app (widgets, analyzer, camera and tensorflow model)
+     * Init the app (analyzer, camera and tensorflow model), the analyzer is
+     * created once opencv is loaded while the camera is bound concurrently
      */
     private void init() {
-        //get the widgets in the view
-        mPreviewView = findViewById(R.id.previewView);
-        mButtonScan = findViewById(R.id.analyze);
-        mTorchSwitch = findViewById(R.id.torch_switch);
+        mAnalyzerCreated = mStartup.getNativeLoaded().thenApplyAsync(v -> {
+            mAnalyzer = new ImageAnalyzer(mPreviewView);
+            return mAnalyzer;
+        }, getMainExecutor());
 
-        mAnalyzer = new ImageAnalyzer(mPreviewView);
         startCamera();
-        loadTensorflow();
+
+        mAnalyzerCreated.thenAcceptBothAsync(mStartup.getClassifier(), (analyzer, classifier) -> {
+            mDnnClassifier = classifier;
+            updateClassifier();
+        }, getMainExecutor());
+
+        mAnalyzerCreated.thenAcceptBothAsync(mStartup.getLightClassifier(), (analyzer, classifier) -> {
+            mLightClassifier = classifier;
+            updateClassifier();
+        }, getMainExecutor());
     }
 }
\ No newline at end of file
@@ -9,8 +9,16 @@ import android.widget.Toast;
 import androidx.camera.core.ImageAnalysis.Analyzer;
 import androidx.camera.core.ImageProxy;
 
+import com.borisbordeaux.arsudokusolver.BuildConfig;
 import com.borisbordeaux.arsudokusolver.classifier.INumberClassifier;
+import com.borisbordeaux.arsudokusolver.utils.image.BufferPool;
 import com.borisbordeaux.arsudokusolver.utils.image.ImageConverter;
+import com.borisbordeaux.arsudokusolver.utils.image.MatArena;
+import com.borisbordeaux.arsudokusolver.utils.image.YuvConverter;
+import com.borisbordeaux.arsudokusolver.utils.log.AndroidLogger;
+import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
+import com.borisbordeaux.arsudokusolver.utils.perf.ProcessingGovernor;
+import com.borisbordeaux.arsudokusolver.utils.record.FrameRecorder;
 
 import org.jetbrains.annotations.NotNull;
 import org.opencv.core.Core;
@@ -19,15 +27,43 @@ import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.io.File;
+import java.io.IOException;
+
 public class ImageAnalyzer implements Analyzer {
 
-    private final Size SQUARE_SIZE = new Size(480, 480);
+    private final String TAG = "ImageAnalyzer";
+
+    //the frame rate to hold, the processing size adapts to the speed of the device
+    private final double TARGET_FPS = 30;
+
+    //the sizes of the square processed image, 480 until the frames are measured,
+    //those above the smallest side of the camera frames are not used
+    private final int[] PROCESSING_SIZES = {320, 400, 480, 560, 640};
+    private final int INITIAL_SIZE_INDEX = 2;
+
+    //time a frame can spend classifying cells, the grid is read over several frames
+    private final double RECOGNITION_BUDGET_MS = 8;
+
+    //number of frames that can wait to be written while recording
+    private final int RECORDING_BUFFERS = 8;
+    private final ILogger mLogger = new AndroidLogger();
     private final ImageView mPreviewView;
-    private final ImageProcessor mImageProcessor = new ImageProcessor();
+
+    //owns all the Mats reused between frames, allows to count the reallocations
+    private final BufferPool mBufferPool = new BufferPool();
+    private final ImageProcessor mImageProcessor = new ImageProcessor(mBufferPool);
+    private final YuvConverter mYuvConverter = new YuvConverter(mBufferPool);
+    private final ProcessingGovernor mGovernor = new ProcessingGovernor(TARGET_FPS, PROCESSING_SIZES, INITIAL_SIZE_INDEX);
+    private final Size mSquareSize = new Size(PROCESSING_SIZES[INITIAL_SIZE_INDEX], PROCESSING_SIZES[INITIAL_SIZE_INDEX]);
+    private final Mat gray = mBufferPool.register(new Mat(mSquareSize, CvType.CV_8UC1));
+    private final Mat rgb = mBufferPool.register(new Mat(mSquareSize, CvType.CV_8UC3));
+    private final Mat output = mBufferPool.register(new Mat(mSquareSize, CvType.CV_8UC3));
     private boolean mDisplayIntermediate = false;
+
+    //records the camera frames to replay them on desktop, null when not recording
+    private volatile FrameRecorder mRecorder = null;
     private Bitmap bmp;
-    private Mat rgb;
-    private Mat output;
 
     /**
      * Constructor, initializes the preview on which the result will be drawn
@@ -36,6 +72,11 @@ public class ImageAnalyzer implements Analyzer {
      */
     public ImageAnalyzer(ImageView view) {
         this.mPreviewView = view;
+
+        mImageProcessor.setRecognitionBudget(RECOGNITION_BUDGET_MS);
+
+        //count the temporary Mats in debug builds to find leaks
+        MatArena.setDebug(BuildConfig.DEBUG);
     }
 
     /**
@@ -45,37 +86,123 @@ public class ImageAnalyzer implements Analyzer {
      */
     @Override
     public void analyze(@NotNull ImageProxy image) {
-        //convert image Yuv to Mat RGB
-        //rotate the image because native image is rotated
-        //resize to a square image
-        if (rgb == null)
-            rgb = new Mat(image.getWidth(), image.getHeight(), CvType.CV_8UC3);
-        ImageConverter.convYUV2RGB(image, rgb);
-        Imgproc.resize(rgb, rgb, SQUARE_SIZE);
+        //the frame is copied before any processing, the file is written in background
+        FrameRecorder recorder = mRecorder;
+        if (recorder != null) {
+            ImageProxy.PlaneProxy y_plane = image.getPlanes()[0];
+            recorder.record(y_plane.getBuffer(), y_plane.getRowStride(), image.getWidth(), image.getHeight(), image.getImageInfo().getTimestamp());
+        }
+
+        //the device is too slow even at the smallest size, the previous result stays displayed
+        if (!mGovernor.shouldProcess()) {
+            image.close();
+            return;
+        }
+        long start = System.nanoTime();
+
+        //the image is never upscaled, it would only slow down the processing
+        int frameSize = Math.min(image.getWidth(), image.getHeight());
+        mGovernor.setMaxSize(frameSize);
+        int size = Math.min(mGovernor.getProcessingSize(), frameSize);
+        if (size != (int) mSquareSize.width) {
+            mSquareSize.width = size;
+            mSquareSize.height = size;
+            mImageProcessor.setProcessingSize(size);
+            mLogger.log(TAG, "processing size " + size + ", frame time " + mGovernor.getLatencyMs() + " ms");
+        }
+        mImageProcessor.setDetectionInterval(mGovernor.getDetectionInterval());
+
+        //get the luminance of the image Yuv without conversion, and the Mat RGB for the display
+        //both resized to a square image
+        mYuvConverter.convYUV2GrayAndRGB(image, gray, rgb, mSquareSize);
 
         //fill output image
-        if (output == null)
-            output = new Mat(SQUARE_SIZE, CvType.CV_8UC3);
         if (mImageProcessor.getNumberClassifier() != null) {
             if (mDisplayIntermediate) {
-                mImageProcessor.getIntermediate(rgb, output);
+                mImageProcessor.getIntermediate(gray, output);
             } else {
-                mImageProcessor.getFinalImage(rgb, output);
+                mImageProcessor.getFinalImage(gray, rgb, output);
             }
         } else {
             rgb.copyTo(output);
         }
 
-        //display output image
-        if (bmp == null)
+        //display output image, the bitmap follows the processing size
+        if (bmp == null || bmp.getWidth() != output.cols() || bmp.getHeight() != output.rows())
             bmp = Bitmap.createBitmap(output.cols(), output.rows(), Bitmap.Config.ARGB_8888);
         ImageConverter.MatToBitmap(output, bmp);
         mPreviewView.post(() -> mPreviewView.setImageBitmap(bmp));
 
-        //free memory
+        //the buffers are kept for the next frame
         image.close();
-        rgb.release();
-        output.release();
+        mGovernor.frameProcessed(System.nanoTime() - start);
+
+        //in the steady state no buffer is reallocated
+        mBufferPool.frameEnded();
+        if (mBufferPool.getLastFrameAllocations() > 0) {
+            mLogger.log(TAG, mBufferPool.getLastFrameAllocations() + " buffers allocated during the frame");
+        }
+
+        //all the temporary Mats of the frame must have been released
+        if (MatArena.getLiveMats() != 0) {
+            mLogger.log(TAG, MatArena.getLiveMats() + " temporary Mats not released after the frame");
+        }
+    }
+
+    /**
+     * Getter for the number of native buffers allocated during the last analyzed frame
+     *
+     * @return the number of allocations during the last frame
+     */
+    public int getLastFrameAllocations() {
+        return mBufferPool.getLastFrameAllocations();
+    }
+
+    /**
+     * Starts recording the luminance of the camera frames in the given file,
+     * the recording can be replayed by the desktop harness
+     *
+     * @param file the file in which the frames are written
+     * @return true if the recording started, false otherwise
+     */
+    public boolean startRecording(@NotNull File file) {
+        if (mRecorder != null) {
+            return false;
+        }
+        try {
+            mRecorder = new FrameRecorder(file, RECORDING_BUFFERS);
+            mLogger.log(TAG, "recording frames in " + file);
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Stops the recording, the frames waiting to be written are written before the file is closed
+     */
+    public void stopRecording() {
+        FrameRecorder recorder = mRecorder;
+        if (recorder == null) {
+            return;
+        }
+        mRecorder = null;
+        try {
+            recorder.close();
+            mLogger.log(TAG, recorder.getRecordedFrames() + " frames recorded, " + recorder.getDroppedFrames() + " dropped");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Getter for the state of the recording
+     *
+     * @return true if the frames are recorded, false otherwise
+     */
+    public boolean isRecording() {
+        return mRecorder != null;
     }
 
     /**
@@ -93,6 +220,15 @@ public class ImageAnalyzer implements Analyzer {
         mImageProcessor.reScan();
     }
 
+    /**
+     * Enables or disables the automatic scan of the grids, see {@link ImageProcessor#setAutoScan(boolean)}
+     *
+     * @param autoScan true to read and solve the grids without any request
+     */
+    public void setAutoScan(boolean autoScan) {
+        mImageProcessor.setAutoScan(autoScan);
+    }
+
     /**
      * Setter for the number classifier to use when processing the image
      *
@@ -1,157 +1,107 @@
 package com.borisbordeaux.arsudokusolver.classifier;
 
 import android.content.Context;
-import android.os.FileUtils;
 
 import com.borisbordeaux.arsudokusolver.utils.log.AndroidLogger;
 import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
 
-import org.opencv.core.CvType;
-import org.opencv.core.Mat;
-import org.opencv.core.Size;
-import org.opencv.dnn.Dnn;
-import org.opencv.dnn.Net;
-import org.opencv.imgproc.Imgproc;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
-public class TensorFlowNumberClassifier implements INumberClassifier {
+public class TensorFlowNumberClassifier extends DnnNumberClassifier {
 
     //tag for debug logs
-    private final String TAG = "OCR";
-    private final ILogger mLogger = new AndroidLogger();
+    private static final String TAG = "OCR";
+    private static final ILogger mLogger = new AndroidLogger();
 
-    //context to get file directory
-    private final Context mContext;
-
-    private final Size size = new Size(28, 28);
+    //the models read from the assets, shared by all instances
+    private static final Map<String, byte[]> sModels = new HashMap<>();
 
-    //opencv dnn net
-    private Net net = null;
+    //context to get the assets
+    private final Context mContext;
 
     /**
-     * Constructor, needs to call load assets to use
+     * Constructor, needs to call load assets to use.
+     * Uses the default model and dnn backend
      *
-     * @param context the context to get file directory
+     * @param context the context to get the assets
      */
     public TensorFlowNumberClassifier(Context context) {
-        this.mContext = context;
+        this(context, DnnConfig.DEFAULT);
     }
 
     /**
-     * {@inheritDoc}
+     * Constructor, needs to call load assets to use
      *
-     * @param img the image that has to be classified
-     * @return the number detected in the image or 0 if the net was not loaded
+     * @param context the context to get the assets
+     * @param config  the model to load and the dnn backend and target to use
      */
-    @Override
-    public int getNumber(Mat img) {
-        if (net != null) {
-            Mat resized = new Mat();
-
-            //resize the image to a 28x28x1 Mat
-            Imgproc.resize(img, resized, size);
-
-            Imgproc.threshold(resized, resized, 10, 255, Imgproc.THRESH_BINARY);
-
-            //convert to a float image
-            resized.convertTo(resized, CvType.CV_32F, 1.0 / 255.0, 0);
-
-            Mat blob = Dnn.blobFromImage(resized);
-            net.setInput(blob);
-            Mat result = net.forward();
-
-            //reshape the resulting blob to get a Mat with 10 elements
-            result.reshape(10);
-
-            int res = softMax(result);
-
-            //free the memory
-            blob.release();
-            result.release();
-            resized.release();
-
-            return res;
-        } else {
-            return 0;
-        }
+    public TensorFlowNumberClassifier(Context context, @NotNull DnnConfig config) {
+        super(config);
+        this.mContext = context;
     }
 
     /**
-     * Loads assets for the model
+     * Loads assets for the model, the model is read from the assets into
+     * memory and the net is built from that buffer without any copy on disk
      *
      * @return true if the assets were loaded correctly, false otherwise
      */
     public boolean loadAssets() {
         boolean loaded = false;
 
-        String dataPath = "";
-        try {
-            InputStream is = mContext.getAssets().open("frozen_graph.pb");
-            File dir = new File(mContext.getFilesDir().getAbsolutePath() + "/graph/");
-            if (!dir.exists()) {
-                if (dir.mkdir()) {
-                    mLogger.log(TAG, "Directory created !");
-                } else {
-                    mLogger.log(TAG, "Directory not created !");
-                }
-            } else {
-                mLogger.log(TAG, "Directory already exists !");
-            }
-            mLogger.log(TAG, "directory is " + dir.getAbsolutePath());
-
-            File f = new File(mContext.getFilesDir().getAbsolutePath() + "/graph/frozen_graph.pb");
-            if (f.createNewFile()) {
-                mLogger.log(TAG, "File created !");
-                OutputStream os = Files.newOutputStream(f.toPath());
-
-                FileUtils.copy(is, os);
-                mLogger.log(TAG, "File copied !");
-            } else {
-                mLogger.log(TAG, "File already exists");
-            }
-            dataPath = f.getAbsolutePath();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        mLogger.log(TAG, "data path is " + dataPath);
+        byte[] model = readModel(mContext, mConfig.getModel().getAsset());
 
-        if (!"".equals(dataPath)) {
-            net = Dnn.readNetFromTensorflow(dataPath);
-            loaded = true;
+        if (model != null) {
+            loaded = loadModel(model);
+            mLogger.log(TAG, "Model loaded from memory (" + model.length + " bytes) with " + mConfig);
         }
 
         return loaded;
     }
 
     /**
-     * Does a softmax on the given Mat containing the results of the neural network
+     * Loads assets for the model using the given executor, see {@link #loadAssets()}
      *
-     * @param result the Mat containing inference results
-     * @return the index where the value is the higher in the data array
+     * @param executor the executor on which the assets are loaded, should not be the UI thread
+     * @return a future completed with true when the assets were loaded correctly, false otherwise
      */
-    private int softMax(Mat result) {
-        float[] data = new float[10];
-        result.get(0, 0, data);
-
-        int val = 0;
-        float max = data[0];
-        for (int i = 1; i < 10; i++) {
-            if (data[i] > max) {
-                val = i;
-                max = data[i];
-            }
-        }
+    public CompletableFuture<Boolean> loadAssetsAsync(@NotNull Executor executor) {
+        return CompletableFuture.supplyAsync(this::loadAssets, executor);
+    }
 
-        //if confidence is less than 99%, set to 0
-        //avoid unsure and false values
-        if (max < 0.99) val = 0;
+    /**
+     * Reads the given model from the assets, each asset is read only
+     * once and the buffer is shared by all the classifiers
+     *
+     * @param context the context to get the assets
+     * @param asset   the name of the model in the assets
+     * @return the bytes of the model or null if the asset could not be read
+     */
+    private static synchronized byte[] readModel(Context context, String asset) {
+        byte[] model = sModels.get(asset);
+        if (model == null) {
+            try (InputStream is = context.getAssets().open(asset)) {
+                model = is.readAllBytes();
+                sModels.put(asset, model);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
 
-        return val;
+            //remove the copy made on disk by previous versions of the app
+            File legacyDir = new File(context.getFilesDir(), "graph");
+            File legacyCopy = new File(legacyDir, asset);
+            if (legacyCopy.delete() && legacyDir.delete()) {
+                mLogger.log(TAG, "Legacy copy of the model deleted");
+            }
+        }
+        return model;
     }
 }
@@ -0,0 +1,282 @@
+package com.borisbordeaux.arsudokusolver.startup;
+
+import android.content.Context;
+
+import com.borisbordeaux.arsudokusolver.classifier.CachingNumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.DnnConfig;
+import com.borisbordeaux.arsudokusolver.classifier.INumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.KNearestNumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.ParallelNumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.TensorFlowNumberClassifier;
+import com.borisbordeaux.arsudokusolver.utils.log.AndroidLogger;
+import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class StartupOrchestrator {
+
+    /**
+     * The different states of the startup, in the order they are reached
+     */
+    public enum State {
+        LOADING_NATIVE,
+        LOADING_MODEL,
+        WARMING_UP,
+        READY,
+        //the dnn classifier could not be loaded, the grids can still be read with the lightweight classifier
+        LIGHT_ONLY,
+        FAILED
+    }
+
+    /**
+     * Listener notified on the main executor each time the startup state changes
+     */
+    public interface Listener {
+        /**
+         * Called when the startup reaches a new state
+         *
+         * @param state the new state
+         */
+        void onStateChanged(State state);
+    }
+
+    //tag for debug logs
+    private static final String TAG = "Startup";
+    private static final ILogger mLogger = new AndroidLogger();
+
+    //number of cells whose number is kept by each classifier, the cells of a few grids
+    private static final int CELL_CACHE_SIZE = 512;
+
+    //context to get the assets of the model
+    private final Context mContext;
+
+    //number of models to load for the classifier pool
+    private final int mPoolSize;
+
+    //the model to load and where to run it
+    private final DnnConfig mConfig;
+
+    //executor on which the listener is called
+    private final Executor mMainExecutor;
+    private final Listener mListener;
+
+    //executor running the startup tasks, one thread per model
+    private final ExecutorService mBackground;
+
+    //completed when the native libraries are loaded
+    private final CompletableFuture<Void> mNativeLoaded = new CompletableFuture<>();
+
+    //completed when the classifier is loaded and warmed up
+    private final CompletableFuture<INumberClassifier> mClassifier = new CompletableFuture<>();
+
+    //completed when the lightweight classifier is trained
+    private final CompletableFuture<INumberClassifier> mLightClassifier = new CompletableFuture<>();
+
+    //the classifier pools created, their workers run until shutdown is called
+    private final List<ParallelNumberClassifier> mPools = new ArrayList<>();
+    private boolean mShutdown = false;
+
+    /**
+     * Constructor, needs to call start to begin the startup
+     *
+     * @param context      the context to get the assets of the model
+     * @param poolSize     the number of models to load for the classifier pool
+     * @param config       the model to load and the dnn backend and target to use
+     * @param mainExecutor the executor on which the listener is called
+     * @param listener     the listener notified of the startup states
+     */
+    public StartupOrchestrator(@NotNull Context context, int poolSize, @NotNull DnnConfig config,
+                               @NotNull Executor mainExecutor, @NotNull Listener listener) {
+        mContext = context;
+        mPoolSize = poolSize;
+        mConfig = config;
+        mMainExecutor = mainExecutor;
+        mListener = listener;
+        mBackground = Executors.newFixedThreadPool(poolSize);
+    }
+
+    /**
+     * Starts the loading of the native libraries, then the loading and
+     * the warm up of the classifier, all in background.
+     * The caller is free to do other work (e.g. binding the camera) meanwhile
+     */
+    public void start() {
+        setState(State.LOADING_NATIVE);
+        mBackground.execute(this::loadNativeLibraries);
+
+        mNativeLoaded
+                .thenComposeAsync(v -> loadClassifier(), mBackground)
+                .whenComplete((classifier, error) -> {
+                    if (error == null) {
+                        setState(State.READY);
+                        mClassifier.complete(classifier);
+                    } else {
+                        mLogger.log(TAG, "Startup failed: " + error.getMessage());
+                        mClassifier.completeExceptionally(error);
+                        //the failure is not fatal if the lightweight classifier can be used
+                        mLightClassifier.whenComplete((light, lightError) -> setState(lightError == null ? State.LIGHT_ONLY : State.FAILED));
+                    }
+                });
+
+        mNativeLoaded
+                .thenApplyAsync(v -> loadLightClassifier(), mBackground)
+                .whenComplete((classifier, error) -> {
+                    if (error == null) {
+                        mLightClassifier.complete(classifier);
+                    } else {
+                        mLightClassifier.completeExceptionally(error);
+                    }
+                });
+
+        //tasks already submitted are still executed
+        CompletableFuture.allOf(mClassifier, mLightClassifier)
+                .whenComplete((v, error) -> mBackground.shutdown());
+    }
+
+    /**
+     * Getter for the loading of the native libraries
+     *
+     * @return a future completed when OpenCV can be used
+     */
+    public CompletableFuture<Void> getNativeLoaded() {
+        return mNativeLoaded;
+    }
+
+    /**
+     * Getter for the loading of the classifier
+     *
+     * @return a future completed with the classifier once it is loaded and warmed up
+     */
+    public CompletableFuture<INumberClassifier> getClassifier() {
+        return mClassifier;
+    }
+
+    /**
+     * Getter for the training of the lightweight classifier, which is
+     * not part of the startup states since the dnn classifier is the default one
+     *
+     * @return a future completed with the lightweight classifier once it is trained
+     */
+    public CompletableFuture<INumberClassifier> getLightClassifier() {
+        return mLightClassifier;
+    }
+
+    /**
+     * Stops the workers of the classifier pools, those created after this call are stopped at once.
+     * The classifiers must not be used after this call
+     */
+    public synchronized void shutdown() {
+        mShutdown = true;
+        for (ParallelNumberClassifier pool : mPools) {
+            pool.shutdown();
+        }
+        mPools.clear();
+    }
+
+    /**
+     * Loads the OpenCV native libraries
+     */
+    private void loadNativeLibraries() {
+        if (OpenCVLoader.initDebug(true)) {
+            mLogger.log(TAG, "OpenCV is configured or connected successfully");
+            mNativeLoaded.complete(null);
+        } else {
+            mLogger.log(TAG, "OpenCV not working or loaded");
+            mNativeLoaded.completeExceptionally(new IllegalStateException("OpenCV not loaded"));
+        }
+    }
+
+    /**
+     * Loads all models of the classifier pool in parallel, then warms them up
+     * with one inference each so that the first scan does not pay the
+     * initialization of the dnn backend
+     *
+     * @return a future completed with the classifier pool
+     */
+    private CompletableFuture<INumberClassifier> loadClassifier() {
+        setState(State.LOADING_MODEL);
+
+        List<TensorFlowNumberClassifier> classifiers = new ArrayList<>(mPoolSize);
+        List<CompletableFuture<Boolean>> loadings = new ArrayList<>(mPoolSize);
+        for (int i = 0; i < mPoolSize; i++) {
+            TensorFlowNumberClassifier nc = new TensorFlowNumberClassifier(mContext, mConfig);
+            classifiers.add(nc);
+            loadings.add(nc.loadAssetsAsync(mBackground));
+        }
+
+        return CompletableFuture.allOf(loadings.toArray(new CompletableFuture[0]))
+                .thenComposeAsync(v -> {
+                    if (!loadings.stream().allMatch(CompletableFuture::join)) {
+                        throw new IllegalStateException("Model not loaded");
+                    }
+
+                    setState(State.WARMING_UP);
+                    List<CompletableFuture<Void>> warmUps = new ArrayList<>(mPoolSize);
+                    for (TensorFlowNumberClassifier nc : classifiers) {
+                        warmUps.add(CompletableFuture.runAsync(nc::warmUp, mBackground));
+                    }
+                    return CompletableFuture.allOf(warmUps.toArray(new CompletableFuture[0]));
+                }, mBackground)
+                .thenApply(v -> new CachingNumberClassifier(createPool(classifiers), TensorFlowNumberClassifier.BINARY_THRESHOLD, CELL_CACHE_SIZE));
+    }
+
+    /**
+     * Trains the lightweight classifiers of the pool from a single rendered training set
+     *
+     * @return the lightweight classifier pool
+     */
+    private INumberClassifier loadLightClassifier() {
+        Mat samples = new Mat();
+        Mat responses = new Mat();
+        KNearestNumberClassifier.createTrainingSet(samples, responses);
+
+        List<KNearestNumberClassifier> classifiers = new ArrayList<>(mPoolSize);
+        for (int i = 0; i < mPoolSize; i++) {
+            KNearestNumberClassifier nc = new KNearestNumberClassifier();
+            nc.train(samples, responses);
+            classifiers.add(nc);
+        }
+
+        //the classifiers keep their own copy of the training set
+        samples.release();
+        responses.release();
+
+        mLogger.log(TAG, "Lightweight classifier trained");
+        return new CachingNumberClassifier(createPool(classifiers), KNearestNumberClassifier.BINARY_THRESHOLD, CELL_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a pool running the given classifiers, kept to be stopped by shutdown
+     *
+     * @param classifiers the classifiers of the pool, one per worker
+     * @return the classifier pool
+     */
+    private synchronized ParallelNumberClassifier createPool(@NotNull List<? extends INumberClassifier> classifiers) {
+        ParallelNumberClassifier pool = new ParallelNumberClassifier(classifiers);
+        if (mShutdown) {
+            pool.shutdown();
+        } else {
+            mPools.add(pool);
+        }
+        return pool;
+    }
+
+    /**
+     * Logs the new state and notifies the listener on the main executor
+     *
+     * @param state the new state
+     */
+    private void setState(State state) {
+        mLogger.log(TAG, "Startup state " + state);
+        mMainExecutor.execute(() -> mListener.onStateChanged(state));
+    }
+}
@@ -2,14 +2,8 @@ package com.borisbordeaux.arsudokusolver.utils.image;
 
 import android.graphics.Bitmap;
 
-import androidx.camera.core.ImageProxy;
-
 import org.jetbrains.annotations.NotNull;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.imgproc.Imgproc;
-
-import java.nio.ByteBuffer;
 
 public class ImageConverter {
 
@@ -34,97 +28,4 @@ public class ImageConverter {
     public static void MatToBitmap(@NotNull Mat img, @NotNull Bitmap bmp) {
         org.opencv.android.Utils.matToBitmap(img, bmp);
     }
-
-    /**
-     * Converts given ImageProxy YUV image into RGB to fill the given Mat
-     *
-     * @param src the YUV image to convert
-     * @param dst the Mat that will contain the RGB version of the image
-     */
-    public static void convYUV2RGB(@NotNull ImageProxy src, @NotNull Mat dst) {
-        ImageProxy.PlaneProxy[] planes = src.getPlanes();
-        int w = src.getWidth();
-        int h = src.getHeight();
-        int chromaPixelStride = planes[1].getPixelStride();
-
-        if (chromaPixelStride == 2) { // Chroma channels are interleaved
-            assert (planes[0].getPixelStride() == 1);
-            assert (planes[2].getPixelStride() == 2);
-            ByteBuffer y_plane = planes[0].getBuffer();
-            int y_plane_step = planes[0].getRowStride();
-            ByteBuffer uv_plane1 = planes[1].getBuffer();
-            int uv_plane1_step = planes[1].getRowStride();
-            ByteBuffer uv_plane2 = planes[2].getBuffer();
-            int uv_plane2_step = planes[2].getRowStride();
-            Mat y_mat = new Mat(h, w, CvType.CV_8UC1, y_plane, y_plane_step);
-            Mat uv_mat1 = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane1, uv_plane1_step);
-            Mat uv_mat2 = new Mat(h / 2, w / 2, CvType.CV_8UC2, uv_plane2, uv_plane2_step);
-            long addr_diff = uv_mat2.dataAddr() - uv_mat1.dataAddr();
-            if (addr_diff > 0) {
-                assert (addr_diff == 1);
-                Imgproc.cvtColorTwoPlane(y_mat, uv_mat1, dst, Imgproc.COLOR_YUV2RGB_NV12);
-            } else {
-                assert (addr_diff == -1);
-                Imgproc.cvtColorTwoPlane(y_mat, uv_mat2, dst, Imgproc.COLOR_YUV2RGB_NV21);
-            }
-            y_mat.release();
-            uv_mat1.release();
-            uv_mat2.release();
-        } else { // Chroma channels are not interleaved
-            byte[] yuv_bytes = new byte[w * (h + h / 2)];
-            ByteBuffer y_plane = planes[0].getBuffer();
-            ByteBuffer u_plane = planes[1].getBuffer();
-            ByteBuffer v_plane = planes[2].getBuffer();
-
-            int yuv_bytes_offset = 0;
-
-            int y_plane_step = planes[0].getRowStride();
-            if (y_plane_step == w) {
-                y_plane.get(yuv_bytes, 0, w * h);
-                yuv_bytes_offset = w * h;
-            } else {
-                int padding = y_plane_step - w;
-                for (int i = 0; i < h; i++) {
-                    y_plane.get(yuv_bytes, yuv_bytes_offset, w);
-                    yuv_bytes_offset += w;
-                    if (i < h - 1) {
-                        y_plane.position(y_plane.position() + padding);
-                    }
-                }
-                assert (yuv_bytes_offset == w * h);
-            }
-
-            int chromaRowStride = planes[1].getRowStride();
-            int chromaRowPadding = chromaRowStride - w / 2;
-
-            if (chromaRowPadding == 0) {
-                // When the row stride of the chroma channels equals their width, we can copy
-                // the entire channels in one go
-                u_plane.get(yuv_bytes, yuv_bytes_offset, w * h / 4);
-                yuv_bytes_offset += w * h / 4;
-                v_plane.get(yuv_bytes, yuv_bytes_offset, w * h / 4);
-            } else {
-                // When not equal, we need to copy the channels row by row
-                for (int i = 0; i < h / 2; i++) {
-                    u_plane.get(yuv_bytes, yuv_bytes_offset, w / 2);
-                    yuv_bytes_offset += w / 2;
-                    if (i < h / 2 - 1) {
-                        u_plane.position(u_plane.position() + chromaRowPadding);
-                    }
-                }
-                for (int i = 0; i < h / 2; i++) {
-                    v_plane.get(yuv_bytes, yuv_bytes_offset, w / 2);
-                    yuv_bytes_offset += w / 2;
-                    if (i < h / 2 - 1) {
-                        v_plane.position(v_plane.position() + chromaRowPadding);
-                    }
-                }
-            }
-
-            Mat yuv_mat = new Mat(h + h / 2, w, CvType.CV_8UC1);
-            yuv_mat.put(0, 0, yuv_bytes);
-            Imgproc.cvtColor(yuv_mat, dst, Imgproc.COLOR_YUV2RGB_I420, 3);
-            yuv_mat.release();
-        }
-    }
 }
@@ -0,0 +1,179 @@
+package com.borisbordeaux.arsudokusolver.utils.image;
+
+import androidx.camera.core.ImageProxy;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+public class YuvConverter {
+
+    //buffers kept between frames, reallocated only when the size of the images changes
+    private byte[] mYuvBytes = new byte[0];
+    private final Mat mYuvMat;
+    private final Mat mUvSmall;
+    private final Mat mRgbFull;
+
+    //owns the headers wrapping the planes of the image
+    private final MatArena mArena = new MatArena();
+
+    /**
+     * Constructor, the converter owns its buffers
+     */
+    public YuvConverter() {
+        this(new BufferPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pool the pool that will own the buffers reused between frames
+     */
+    public YuvConverter(@NotNull BufferPool pool) {
+        mYuvMat = pool.register(new Mat());
+        mUvSmall = pool.register(new Mat());
+        mRgbFull = pool.register(new Mat());
+    }
+
+    /**
+     * Wraps the luminance plane of the given ImageProxy YUV image in a grayscale Mat, without copy.
+     * The returned Mat must be released before the image is closed
+     *
+     * @param src the YUV image
+     * @return the Mat sharing the memory of the luminance plane
+     */
+    public static Mat wrapLuminance(@NotNull ImageProxy src) {
+        ImageProxy.PlaneProxy y_plane = src.getPlanes()[0];
+        return new Mat(src.getHeight(), src.getWidth(), CvType.CV_8UC1, y_plane.getBuffer(), y_plane.getRowStride());
+    }
+
+    /**
+     * Fills the given Mats with the luminance and the RGB version of the given ImageProxy YUV image,
+     * both resized to the given size. The luminance is read directly from the image and resized on
+     * one channel, when the chroma channels are interleaved they are resized on their own before the
+     * conversion so that no 3 channels resize is needed
+     *
+     * @param src  the YUV image to convert
+     * @param gray the Mat that will contain the luminance of the image
+     * @param dst  the Mat that will contain the RGB version of the image
+     * @param size the size of both results, with even width and height
+     */
+    public void convYUV2GrayAndRGB(@NotNull ImageProxy src, @NotNull Mat gray, @NotNull Mat dst, @NotNull Size size) {
+        ImageProxy.PlaneProxy[] planes = src.getPlanes();
+        int w = src.getWidth();
+        int h = src.getHeight();
+
+        try (MatArena arena = mArena.begin()) {
+            Mat y_mat = arena.add(wrapLuminance(src));
+            Imgproc.resize(y_mat, gray, size);
+        }
+
+        if (planes[1].getPixelStride() == 2) { // Chroma channels are interleaved
+            try (MatArena arena = mArena.begin()) {
+                Mat uv_mat1 = arena.add(new Mat(h / 2, w / 2, CvType.CV_8UC2, planes[1].getBuffer(), planes[1].getRowStride()));
+                Mat uv_mat2 = arena.add(new Mat(h / 2, w / 2, CvType.CV_8UC2, planes[2].getBuffer(), planes[2].getRowStride()));
+                Size chromaSize = new Size(size.width / 2, size.height / 2);
+                long addr_diff = uv_mat2.dataAddr() - uv_mat1.dataAddr();
+                if (addr_diff > 0) {
+                    Imgproc.resize(uv_mat1, mUvSmall, chromaSize);
+                    Imgproc.cvtColorTwoPlane(gray, mUvSmall, dst, Imgproc.COLOR_YUV2RGB_NV12);
+                } else {
+                    Imgproc.resize(uv_mat2, mUvSmall, chromaSize);
+                    Imgproc.cvtColorTwoPlane(gray, mUvSmall, dst, Imgproc.COLOR_YUV2RGB_NV21);
+                }
+            }
+        } else { // Chroma channels are not interleaved
+            //not resized in place, it would reallocate dst twice
+            convYUV2RGB(src, mRgbFull);
+            Imgproc.resize(mRgbFull, dst, size);
+        }
+    }
+
+    /**
+     * Converts given ImageProxy YUV image into RGB to fill the given Mat.
+     * No memory is allocated as long as the size of the images does not change
+     *
+     * @param src the YUV image to convert
+     * @param dst the Mat that will contain the RGB version of the image
+     */
+    public void convYUV2RGB(@NotNull ImageProxy src, @NotNull Mat dst) {
+        ImageProxy.PlaneProxy[] planes = src.getPlanes();
+        int w = src.getWidth();
+        int h = src.getHeight();
+        int chromaPixelStride = planes[1].getPixelStride();
+
+        if (chromaPixelStride == 2) { // Chroma channels are interleaved
+            assert (planes[0].getPixelStride() == 1);
+            assert (planes[2].getPixelStride() == 2);
+            try (MatArena arena = mArena.begin()) {
+                Mat y_mat = arena.add(wrapLuminance(src));
+                Mat uv_mat1 = arena.add(new Mat(h / 2, w / 2, CvType.CV_8UC2, planes[1].getBuffer(), planes[1].getRowStride()));
+                Mat uv_mat2 = arena.add(new Mat(h / 2, w / 2, CvType.CV_8UC2, planes[2].getBuffer(), planes[2].getRowStride()));
+                long addr_diff = uv_mat2.dataAddr() - uv_mat1.dataAddr();
+                if (addr_diff > 0) {
+                    assert (addr_diff == 1);
+                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat1, dst, Imgproc.COLOR_YUV2RGB_NV12);
+                } else {
+                    assert (addr_diff == -1);
+                    Imgproc.cvtColorTwoPlane(y_mat, uv_mat2, dst, Imgproc.COLOR_YUV2RGB_NV21);
+                }
+            }
+        } else { // Chroma channels are not interleaved
+            //the staging buffer is kept as long as the size does not change
+            int size = w * (h + h / 2);
+            if (mYuvBytes.length != size) {
+                mYuvBytes = new byte[size];
+            }
+
+            //copy the 3 planes one after the other in the staging buffer
+            int offset = copyPlane(planes[0].getBuffer(), planes[0].getRowStride(), w, h, 0);
+            offset = copyPlane(planes[1].getBuffer(), planes[1].getRowStride(), w / 2, h / 2, offset);
+            copyPlane(planes[2].getBuffer(), planes[2].getRowStride(), w / 2, h / 2, offset);
+
+            //does nothing if the size did not change
+            mYuvMat.create(h + h / 2, w, CvType.CV_8UC1);
+            mYuvMat.put(0, 0, mYuvBytes);
+            Imgproc.cvtColor(mYuvMat, dst, Imgproc.COLOR_YUV2RGB_I420, 3);
+        }
+    }
+
+    /**
+     * Frees the memory of the buffers, the converter can still be used after this call
+     */
+    public void release() {
+        mYuvBytes = new byte[0];
+        mYuvMat.release();
+        mUvSmall.release();
+        mRgbFull.release();
+    }
+
+    /**
+     * Copies the given plane in the staging buffer without its row padding.
+     * When the rows are not padded, the whole plane is copied at once
+     *
+     * @param plane     the buffer of the plane
+     * @param rowStride the number of bytes between the start of two rows in the plane
+     * @param width     the number of bytes of a row to copy
+     * @param height    the number of rows
+     * @param offset    the position in the staging buffer of the first byte to copy
+     * @return the position in the staging buffer after the last byte copied
+     */
+    private int copyPlane(ByteBuffer plane, int rowStride, int width, int height, int offset) {
+        if (rowStride == width) {
+            plane.position(0);
+            plane.get(mYuvBytes, offset, width * height);
+            return offset + width * height;
+        }
+
+        for (int i = 0; i < height; i++) {
+            plane.position(i * rowStride);
+            plane.get(mYuvBytes, offset, width);
+            offset += width;
+        }
+        return offset;
+    }
+}
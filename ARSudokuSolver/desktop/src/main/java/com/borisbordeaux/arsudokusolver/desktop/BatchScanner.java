@@ -0,0 +1,300 @@
+package com.borisbordeaux.arsudokusolver.desktop;
+
+import com.borisbordeaux.arsudokusolver.analyzer.ImageProcessor;
+import com.borisbordeaux.arsudokusolver.classifier.DnnConfig;
+import com.borisbordeaux.arsudokusolver.classifier.DnnNumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.INumberClassifier;
+import com.borisbordeaux.arsudokusolver.model.Sudoku;
+import com.borisbordeaux.arsudokusolver.utils.log.ConsoleLogger;
+import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import nu.pattern.OpenCV;
+
+/**
+ * Scans all the images of a directory with a pool of workers and writes the grid read,
+ * its solution and the time of each image in a CSV file. Each worker thread has its own
+ * image processor, classifier and sudoku since none of them can be shared between threads
+ */
+public class BatchScanner {
+
+    private static final String TAG = "BatchScanner";
+    private static final String USAGE = "usage: BatchScanner [--model " + ReplayHarness.DEFAULT_MODEL + "] [--knn] [--threads n] [--output batch.csv] <directory>";
+    private static final ILogger mLogger = new ConsoleLogger();
+
+    private static final String CSV_HEADER = "file,detected,grid,solution,ms";
+
+    //creates the classifier of each worker
+    private final Supplier<INumberClassifier> mClassifierFactory;
+
+    //the workers scanning the images
+    private final ExecutorService mExecutor;
+    private final int mThreads;
+
+    //the processor, classifier and sudoku of the current worker, created on its first image
+    private final ThreadLocal<Worker> mWorker;
+
+    /**
+     * The result of the scan of one image
+     */
+    private static class Result {
+        private final Path mImage;
+        private final boolean mDetected;
+        private final int[] mGrid;
+        private final int[] mSolution;
+        private final double mMs;
+
+        private Result(Path image, boolean detected, int[] grid, int[] solution, double ms) {
+            mImage = image;
+            mDetected = detected;
+            mGrid = grid;
+            mSolution = solution;
+            mMs = ms;
+        }
+    }
+
+    /**
+     * The objects used by one worker thread
+     */
+    private class Worker {
+        private final ImageProcessor mProcessor = new ImageProcessor();
+        private final Sudoku mSudoku = new Sudoku();
+
+        private Worker() {
+            mProcessor.setNumberClassifier(mClassifierFactory.get());
+        }
+    }
+
+    /**
+     * Constructor
+     *
+     * @param classifierFactory creates a new classifier, called once by each worker
+     * @param threads           the number of workers
+     */
+    public BatchScanner(@NotNull Supplier<INumberClassifier> classifierFactory, int threads) {
+        mClassifierFactory = classifierFactory;
+        mThreads = threads;
+        mWorker = ThreadLocal.withInitial(Worker::new);
+        mExecutor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "BatchScanner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path model = ReplayHarness.DEFAULT_MODEL;
+        Path output = Paths.get("batch.csv");
+        boolean knn = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path directory = null;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--model":
+                    model = Paths.get(args[++i]);
+                    break;
+                case "--knn":
+                    knn = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--output":
+                    output = Paths.get(args[++i]);
+                    break;
+                default:
+                    //an unknown option such as --help is not the directory
+                    if (args[i].startsWith("--")) {
+                        mLogger.log(TAG, USAGE);
+                        System.exit(1);
+                    }
+                    directory = Paths.get(args[i]);
+            }
+        }
+
+        if (directory == null || !Files.isDirectory(directory)) {
+            mLogger.log(TAG, USAGE);
+            System.exit(1);
+        }
+        if (!knn && !Files.isRegularFile(model)) {
+            mLogger.log(TAG, "model " + model + " not found");
+            mLogger.log(TAG, USAGE);
+            System.exit(1);
+        }
+
+        //extracts and loads the native library for the platform
+        OpenCV.loadLocally();
+
+        //the model is read once, each worker creates its own net from it
+        Supplier<INumberClassifier> factory;
+        if (knn) {
+            factory = ReplayHarness::createKNearestClassifier;
+        } else {
+            byte[] modelBytes = Files.readAllBytes(model);
+            factory = () -> {
+                DnnNumberClassifier classifier = new DnnNumberClassifier(DnnConfig.DEFAULT);
+                if (!classifier.loadModel(modelBytes)) {
+                    throw new IllegalStateException("Cannot load the model");
+                }
+                return classifier;
+            };
+        }
+
+        BatchScanner scanner = new BatchScanner(factory, threads);
+        try (Writer csv = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            scanner.scanDirectory(directory, csv);
+        } finally {
+            scanner.shutdown();
+        }
+    }
+
+    /**
+     * Scans all the images of the given directory in parallel and writes one line for each image in
+     * the given CSV writer, in the order of the file names. The throughput is logged at the end
+     *
+     * @param directory the directory containing the images
+     * @param csv       the writer of the CSV output
+     * @throws IOException if the directory cannot be listed or the output cannot be written
+     */
+    public void scanDirectory(@NotNull Path directory, @NotNull Writer csv) throws IOException {
+        List<Path> images;
+        try (Stream<Path> files = Files.list(directory)) {
+            images = files.filter(ReplayHarness::isImage).sorted().collect(Collectors.toList());
+        }
+
+        long start = System.nanoTime();
+        List<Future<Result>> results = new ArrayList<>(images.size());
+        for (Path image : images) {
+            results.add(mExecutor.submit(() -> scan(image)));
+        }
+
+        int detected = 0;
+        int solved = 0;
+        csv.write(CSV_HEADER);
+        csv.write('\n');
+        for (Future<Result> future : results) {
+            Result result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+                continue;
+            }
+
+            if (result.mDetected) {
+                detected++;
+            }
+            if (result.mSolution != null) {
+                solved++;
+            }
+            writeLine(csv, result);
+        }
+        csv.flush();
+        double totalMs = (System.nanoTime() - start) / 1e6;
+
+        mLogger.log(TAG, String.format(Locale.ROOT, "%d images, %d grids detected, %d solved, in %.1f ms with %d threads",
+                images.size(), detected, solved, totalMs, mThreads));
+        mLogger.log(TAG, String.format(Locale.ROOT, "%.1f images per second", images.size() * 1000 / totalMs));
+    }
+
+    /**
+     * Stops the workers
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Scans the given image with the objects of the current worker
+     *
+     * @param image the path of the image
+     * @return the result of the scan, the time includes the decoding of the image
+     */
+    private Result scan(Path image) {
+        Worker worker = mWorker.get();
+        long start = System.nanoTime();
+
+        Mat gray = ReplayHarness.readImage(image, Imgcodecs.IMREAD_GRAYSCALE);
+        if (gray == null) {
+            return new Result(image, false, null, null, (System.nanoTime() - start) / 1e6);
+        }
+
+        int[] grid = new int[81];
+        boolean detected = worker.mProcessor.scanGrid(gray, grid);
+        gray.release();
+
+        int[] solution = null;
+        if (detected) {
+            worker.mSudoku.solve(grid);
+            if (!worker.mSudoku.isError()) {
+                solution = new int[81];
+                for (int i = 0; i < 81; i++) {
+                    solution[i] = worker.mSudoku.getValue(i);
+                }
+            }
+        }
+
+        return new Result(image, detected, detected ? grid : null, solution, (System.nanoTime() - start) / 1e6);
+    }
+
+    /**
+     * Writes the CSV line of the given result, the grids are written as 81 digits row by row
+     * and are empty when the grid was not detected or not solved
+     *
+     * @param csv    the writer of the CSV output
+     * @param result the result to write
+     * @throws IOException if the line cannot be written
+     */
+    private static void writeLine(Writer csv, Result result) throws IOException {
+        csv.write(result.mImage.getFileName().toString().replace(",", "_"));
+        csv.write(',');
+        csv.write(String.valueOf(result.mDetected));
+        csv.write(',');
+        writeGrid(csv, result.mGrid);
+        csv.write(',');
+        writeGrid(csv, result.mSolution);
+        csv.write(',');
+        csv.write(String.format(Locale.ROOT, "%.3f", result.mMs));
+        csv.write('\n');
+    }
+
+    /**
+     * Writes the given grid as its 81 digits
+     *
+     * @param csv  the writer of the CSV output
+     * @param grid the 81 values, may be null
+     * @throws IOException if the grid cannot be written
+     */
+    private static void writeGrid(Writer csv, int[] grid) throws IOException {
+        if (grid == null) {
+            return;
+        }
+        for (int value : grid) {
+            csv.write('0' + value);
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package com.borisbordeaux.arsudokusolver.desktop;
+
+import com.borisbordeaux.arsudokusolver.analyzer.ImageProcessor;
+import com.borisbordeaux.arsudokusolver.classifier.CachingNumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.DnnConfig;
+import com.borisbordeaux.arsudokusolver.classifier.DnnNumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.INumberClassifier;
+import com.borisbordeaux.arsudokusolver.classifier.KNearestNumberClassifier;
+import com.borisbordeaux.arsudokusolver.utils.log.ConsoleLogger;
+import com.borisbordeaux.arsudokusolver.utils.log.ILogger;
+import com.borisbordeaux.arsudokusolver.utils.perf.StageTimer;
+import com.borisbordeaux.arsudokusolver.utils.record.FrameReplayReader;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import nu.pattern.OpenCV;
+
+/**
+ * Runs the analyzer pipeline of the app on the JVM, without camera nor display.
+ * Still images are scanned several times to measure each stage and the recognized
+ * grid is compared to the ground truth written next to the image (same name with
+ * the txt extension, 81 digits, 0 for the empty cells). A directory is replayed as
+ * a sequence of frames, sorted by name, the way the camera frames are processed.
+ * A recording made on the phone (frames extension) is replayed frame by frame,
+ * as fast as possible or at the pace of the camera
+ */
+public class ReplayHarness {
+
+    private static final String TAG = "ReplayHarness";
+    private static final ILogger mLogger = new ConsoleLogger();
+
+    //size of the processed images, same as the square analyzed on the phone
+    private static final Size PROCESSING_SIZE = new Size(480, 480);
+
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png", ".bmp"};
+    private static final String RECORDING_EXTENSION = ".frames";
+
+    //the model of the app, relative to the desktop module from which the gradle tasks are run
+    static final Path DEFAULT_MODEL = Paths.get("..", "app", "src", "main", "assets", "frozen_graph.pb");
+    private static final String USAGE = "usage: ReplayHarness [--model " + DEFAULT_MODEL + "] [--knn] [--runs n] [--realtime] [--auto] [--budget ms] [--cache cells] [--check-cache] [--shift px] <image, directory or recording>...";
+
+    private final ImageProcessor mProcessor = new ImageProcessor();
+    private final StageTimer mTimer = new StageTimer();
+
+    //number of scans of each still image
+    private final int mRuns;
+
+    //true to replay the recordings at the pace they were recorded
+    private boolean mRealtime = false;
+
+    //true to let the processor read the grids by itself instead of scanning the first one
+    private boolean mAutoScan = false;
+
+    //maximum translation in pixels of the still images between two runs, 0 to scan the same image
+    private double mShift = 0;
+
+    private int mCorrectCells = 0;
+    private int mCheckedCells = 0;
+
+    /**
+     * Constructor
+     *
+     * @param classifier the classifier used to read the grids
+     * @param runs       the number of scans of each still image, to average the timings
+     */
+    public ReplayHarness(@NotNull INumberClassifier classifier, int runs) {
+        mProcessor.setNumberClassifier(classifier);
+        mProcessor.setStageTimer(mTimer);
+        mRuns = runs;
+    }
+
+    /**
+     * Setter for the pace of the replay of the recordings
+     *
+     * @param realtime true to wait between the frames as the camera did, false to replay as fast as possible
+     */
+    public void setRealtime(boolean realtime) {
+        mRealtime = realtime;
+    }
+
+    /**
+     * Setter for the scan mode of the replays
+     *
+     * @param autoScan true to read the grids with the auto scan of the processor, false to scan the first grid found
+     */
+    public void setAutoScan(boolean autoScan) {
+        mAutoScan = autoScan;
+    }
+
+    /**
+     * Setter for the translation of the still images, each run scans the image moved by a different
+     * sub pixel offset, as the frames of a phone held still. The grid read by each run is checked
+     *
+     * @param shift the maximum translation in pixels, 0 to scan the same image at each run
+     */
+    public void setShift(double shift) {
+        mShift = shift;
+    }
+
+    /**
+     * Setter for the time each replayed frame can spend classifying cells
+     *
+     * @param budgetMs the budget in milliseconds, 0 or less to read the whole grid in one frame
+     */
+    public void setRecognitionBudget(double budgetMs) {
+        mProcessor.setRecognitionBudget(budgetMs);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path model = DEFAULT_MODEL;
+        boolean knn = false;
+        boolean realtime = false;
+        boolean autoScan = false;
+        double budgetMs = 0;
+        int cacheSize = 0;
+        boolean checkCache = false;
+        double shift = 0;
+        int runs = 10;
+        List<Path> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--model":
+                    model = Paths.get(args[++i]);
+                    break;
+                case "--knn":
+                    knn = true;
+                    break;
+                case "--cache":
+                    cacheSize = Integer.parseInt(args[++i]);
+                    break;
+                case "--check-cache":
+                    checkCache = true;
+                    break;
+                case "--shift":
+                    shift = Double.parseDouble(args[++i]);
+                    break;
+                case "--budget":
+                    budgetMs = Double.parseDouble(args[++i]);
+                    break;
+                case "--auto":
+                    autoScan = true;
+                    break;
+                case "--realtime":
+                    realtime = true;
+                    break;
+                case "--runs":
+                    runs = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    //an unknown option such as --help is not an input
+                    if (args[i].startsWith("--")) {
+                        mLogger.log(TAG, USAGE);
+                        System.exit(1);
+                    }
+                    inputs.add(Paths.get(args[i]));
+            }
+        }
+
+        if (inputs.isEmpty()) {
+            mLogger.log(TAG, USAGE);
+            System.exit(1);
+        }
+        if (!knn && !Files.isRegularFile(model)) {
+            mLogger.log(TAG, "model " + model + " not found");
+            mLogger.log(TAG, USAGE);
+            System.exit(1);
+        }
+
+        //extracts and loads the native library for the platform
+        OpenCV.loadLocally();
+
+        INumberClassifier classifier = knn ? createKNearestClassifier() : createDnnClassifier(model);
+        if (cacheSize > 0) {
+            double binaryThreshold = knn ? KNearestNumberClassifier.BINARY_THRESHOLD : DnnNumberClassifier.BINARY_THRESHOLD;
+            CachingNumberClassifier cache = new CachingNumberClassifier(classifier, binaryThreshold, cacheSize);
+            cache.setChecked(checkCache);
+            classifier = cache;
+        }
+        ReplayHarness harness = new ReplayHarness(classifier, runs);
+        harness.setRealtime(realtime);
+        harness.setAutoScan(autoScan);
+        harness.setRecognitionBudget(budgetMs);
+        harness.setShift(shift);
+        for (Path input : inputs) {
+            if (Files.isDirectory(input)) {
+                harness.replay(input);
+            } else if (input.toString().endsWith(RECORDING_EXTENSION)) {
+                harness.replayRecording(input);
+            } else {
+                harness.scan(input);
+            }
+        }
+        harness.report();
+    }
+
+    /**
+     * Scans the given still image, logs the time of the scan and compares
+     * the grid read to the ground truth if any
+     *
+     * @param image the path of the image
+     */
+    public void scan(@NotNull Path image) {
+        Mat gray = readImage(image, Imgcodecs.IMREAD_GRAYSCALE);
+        if (gray == null) {
+            return;
+        }
+
+        //without shift the runs read the same grid, only the last one is checked
+        int nbGrids = mShift > 0 ? mRuns : 1;
+        int[][] grids = new int[nbGrids][81];
+        boolean[] found = new boolean[nbGrids];
+        long scanNs = 0;
+        Mat shifted = new Mat();
+        for (int run = 0; run < mRuns; run++) {
+            Mat input = gray;
+            if (mShift > 0) {
+                shift(gray, shifted, run);
+                input = shifted;
+            }
+            int g = Math.min(run, nbGrids - 1);
+            long start = System.nanoTime();
+            found[g] = mProcessor.scanGrid(input, grids[g]);
+            scanNs += System.nanoTime() - start;
+        }
+        double scanMs = scanNs / 1e6 / mRuns;
+        shifted.release();
+        gray.release();
+
+        int nbFound = 0;
+        for (int g = 0; g < nbGrids; g++) {
+            if (found[g]) {
+                grids[nbFound++] = grids[g];
+            }
+        }
+        if (nbFound == 0) {
+            mLogger.log(TAG, String.format(Locale.ROOT, "%s: no grid found, %.2f ms", image.getFileName(), scanMs));
+            return;
+        }
+
+        int[] expected = readGroundTruth(image);
+        if (expected == null) {
+            mLogger.log(TAG, String.format(Locale.ROOT, "%s: grid read in %.2f ms, no ground truth", image.getFileName(), scanMs));
+            return;
+        }
+
+        int correct = 0;
+        for (int i = 0; i < 81; i++) {
+            int wrong = 0;
+            for (int run = 0; run < nbFound; run++) {
+                if (grids[run][i] != expected[i]) {
+                    wrong++;
+                }
+            }
+            correct += nbFound - wrong;
+            if (wrong > 0 && nbFound == 1) {
+                mLogger.log(TAG, String.format(Locale.ROOT, "%s: cell (%d, %d) read %d instead of %d",
+                        image.getFileName(), i / 9, i % 9, grids[0][i], expected[i]));
+            } else if (wrong > 0) {
+                mLogger.log(TAG, String.format(Locale.ROOT, "%s: cell (%d, %d) misread in %d/%d runs",
+                        image.getFileName(), i / 9, i % 9, wrong, nbFound));
+            }
+        }
+        mCorrectCells += correct;
+        mCheckedCells += 81 * nbFound;
+        mLogger.log(TAG, String.format(Locale.ROOT, "%s: %d/%d cells correct, %.2f ms", image.getFileName(), correct, 81 * nbFound, scanMs));
+    }
+
+    /**
+     * Translates the given image by the sub pixel offset of the given run, the offsets
+     * of the successive runs are spread in [0..shift] on both axes
+     *
+     * @param src the image to translate
+     * @param dst the translated image
+     * @param run the index of the run
+     */
+    private void shift(@NotNull Mat src, @NotNull Mat dst, int run) {
+        //golden ratio sequences, the first run is not moved
+        double dx = mShift * ((run * 0.618034) % 1);
+        double dy = mShift * ((run * 0.754878) % 1);
+        Mat translation = new Mat(2, 3, CvType.CV_64F);
+        translation.put(0, 0, 1, 0, dx, 0, 1, dy);
+        Imgproc.warpAffine(src, dst, translation, src.size(), Imgproc.INTER_LINEAR, Core.BORDER_REPLICATE);
+        translation.release();
+    }
+
+    /**
+     * Replays the images of the given directory, sorted by name, as the frames of a camera session.
+     * The frames are loaded before the replay so that only the processing is measured
+     *
+     * @param directory the directory containing the frames
+     * @throws IOException if the directory cannot be listed
+     */
+    public void replay(@NotNull Path directory) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(directory)) {
+            paths = files.filter(ReplayHarness::isImage).sorted().collect(Collectors.toList());
+        }
+
+        List<Mat> frames = new ArrayList<>();
+        for (Path path : paths) {
+            Mat frame = readImage(path, Imgcodecs.IMREAD_COLOR);
+            if (frame != null) {
+                frames.add(frame);
+            }
+        }
+        if (frames.isEmpty()) {
+            mLogger.log(TAG, directory + ": no frame");
+            return;
+        }
+
+        Mat gray = new Mat();
+        Mat rgb = new Mat();
+        Mat output = new Mat();
+
+        //the first frame containing a grid is scanned (or the grid is voted in auto scan), then the grid is followed
+        startReplay();
+        long start = System.nanoTime();
+        for (Mat frame : frames) {
+            Imgproc.cvtColor(frame, gray, Imgproc.COLOR_BGR2GRAY);
+            Imgproc.cvtColor(frame, rgb, Imgproc.COLOR_BGR2RGB);
+            mProcessor.getFinalImage(gray, rgb, output);
+        }
+        double totalMs = (System.nanoTime() - start) / 1e6;
+
+        mLogger.log(TAG, String.format(Locale.ROOT, "%s: %d frames in %.1f ms, %.1f frames per second",
+                directory.getFileName(), frames.size(), totalMs, frames.size() * 1000 / totalMs));
+
+        for (Mat frame : frames) {
+            frame.release();
+        }
+        gray.release();
+        rgb.release();
+        output.release();
+    }
+
+    /**
+     * Replays the given recording of camera frames. The frames are read from the mapped file
+     * without copy, then processed as on the phone. In realtime mode, each frame is processed
+     * at the time it was recorded and the frames whose processing starts late are counted
+     *
+     * @param recording the file written by the frame recorder of the app
+     * @throws IOException if the file is not a valid recording
+     */
+    public void replayRecording(@NotNull Path recording) throws IOException {
+        Mat gray = new Mat();
+        Mat rgb = new Mat();
+        Mat output = new Mat();
+
+        int frames = 0;
+        int lateFrames = 0;
+        long firstTimestamp = 0;
+        startReplay();
+        long start = System.nanoTime();
+        try (FrameReplayReader reader = new FrameReplayReader(recording.toFile())) {
+            while (reader.next()) {
+                if (frames == 0) {
+                    firstTimestamp = reader.getTimestamp();
+                }
+
+                //waits until the time the frame was captured, relative to the first frame
+                if (mRealtime) {
+                    long delay = (reader.getTimestamp() - firstTimestamp) - (System.nanoTime() - start);
+                    if (delay > 0) {
+                        sleep(delay);
+                    } else if (frames > 0) {
+                        lateFrames++;
+                    }
+                }
+
+                //same conversion as the app, the display is only the luminance
+                Mat luminance = new Mat(reader.getHeight(), reader.getWidth(), CvType.CV_8UC1, reader.getLuminance());
+                Imgproc.resize(luminance, gray, PROCESSING_SIZE);
+                luminance.release();
+                Imgproc.cvtColor(gray, rgb, Imgproc.COLOR_GRAY2RGB);
+                mProcessor.getFinalImage(gray, rgb, output);
+                frames++;
+            }
+        }
+        double totalMs = (System.nanoTime() - start) / 1e6;
+
+        if (frames == 0) {
+            mLogger.log(TAG, recording + ": no frame");
+        } else if (mRealtime) {
+            mLogger.log(TAG, String.format(Locale.ROOT, "%s: %d frames in %.1f ms, %d frames late",
+                    recording.getFileName(), frames, totalMs, lateFrames));
+        } else {
+            mLogger.log(TAG, String.format(Locale.ROOT, "%s: %d frames in %.1f ms, %.1f frames per second",
+                    recording.getFileName(), frames, totalMs, frames * 1000 / totalMs));
+        }
+
+        gray.release();
+        rgb.release();
+        output.release();
+    }
+
+    /**
+     * Prepares the processor for a new sequence of frames
+     */
+    private void startReplay() {
+        mProcessor.setAutoScan(mAutoScan);
+        if (!mAutoScan) {
+            mProcessor.reScan();
+        }
+    }
+
+    /**
+     * Logs the mean time of each stage and the recognition accuracy
+     */
+    public void report() {
+        for (String stage : mTimer.getStages()) {
+            mLogger.log(TAG, String.format(Locale.ROOT, "%-10s %8d runs %10.3f ms mean", stage, mTimer.getRuns(stage), mTimer.getMeanMs(stage)));
+        }
+        if (mCheckedCells > 0) {
+            mLogger.log(TAG, String.format(Locale.ROOT, "accuracy: %d/%d cells (%.1f %%)", mCorrectCells, mCheckedCells, 100.0 * mCorrectCells / mCheckedCells));
+        }
+        if (mProcessor.getNumberClassifier() instanceof CachingNumberClassifier) {
+            CachingNumberClassifier cache = (CachingNumberClassifier) mProcessor.getNumberClassifier();
+            mLogger.log(TAG, String.format(Locale.ROOT, "cell cache: %d hits, %d misses (%.1f %%), %d mismatches", cache.getHits(), cache.getMisses(), 100 * cache.getHitRate(), cache.getMismatches()));
+        }
+    }
+
+    /**
+     * Waits for the given duration
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    private static void sleep(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the dnn classifier from the given model file
+     *
+     * @param model the path of the tensorflow frozen graph
+     * @return the classifier, warmed up
+     * @throws IOException if the model cannot be read
+     */
+    private static INumberClassifier createDnnClassifier(Path model) throws IOException {
+        DnnNumberClassifier classifier = new DnnNumberClassifier(DnnConfig.DEFAULT);
+        if (!classifier.loadModel(Files.readAllBytes(model))) {
+            throw new IOException("Cannot load the model " + model);
+        }
+        classifier.warmUp();
+        return classifier;
+    }
+
+    /**
+     * Creates the light classifier trained on rendered fonts
+     *
+     * @return the classifier, trained
+     */
+    static INumberClassifier createKNearestClassifier() {
+        Mat samples = new Mat();
+        Mat responses = new Mat();
+        KNearestNumberClassifier.createTrainingSet(samples, responses);
+        KNearestNumberClassifier classifier = new KNearestNumberClassifier();
+        classifier.train(samples, responses);
+        samples.release();
+        responses.release();
+        return classifier;
+    }
+
+    /**
+     * Reads the given image and resizes it to the processing size
+     *
+     * @param path  the path of the image
+     * @param flags the flags of imread, grayscale or color
+     * @return the image or null if it cannot be read
+     */
+    static Mat readImage(Path path, int flags) {
+        Mat img = Imgcodecs.imread(path.toString(), flags);
+        if (img.empty()) {
+            mLogger.log(TAG, path + ": cannot read the image");
+            return null;
+        }
+        Imgproc.resize(img, img, PROCESSING_SIZE);
+        return img;
+    }
+
+    /**
+     * Reads the ground truth of the given image, written in the file of the
+     * same name with the txt extension, the 81 digits of the grid row by row
+     *
+     * @param image the path of the image
+     * @return the 81 values of the grid or null if there is no valid ground truth
+     */
+    private static int[] readGroundTruth(Path image) {
+        String name = image.getFileName().toString();
+        Path file = image.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".txt");
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try {
+            String digits = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).replaceAll("[^0-9]", "");
+            if (digits.length() != 81) {
+                mLogger.log(TAG, file + ": 81 digits expected");
+                return null;
+            }
+            int[] grid = new int[81];
+            for (int i = 0; i < 81; i++) {
+                grid[i] = digits.charAt(i) - '0';
+            }
+            return grid;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether the given file is an image, from its extension
+     *
+     * @param path the path of the file
+     * @return true if the file is an image, false otherwise
+     */
+    static boolean isImage(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : IMAGE_EXTENSIONS) {
+            if (name.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
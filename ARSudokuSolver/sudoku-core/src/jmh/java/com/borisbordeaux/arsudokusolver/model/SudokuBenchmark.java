@@ -0,0 +1,49 @@
+package com.borisbordeaux.arsudokusolver.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to solve a sudoku, the solver runs on each scan of the app
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SudokuBenchmark {
+
+    //the grid of the pictures directory, solved without any choice
+    private static final String EASY = "002007090000105700006004015000500040060413050080006000340700900008902000020300500";
+
+    //a grid with few values, that needs many choices
+    private static final String HARD = "800000000003600000070090200050007000000045700000100030001000068008500010090000400";
+
+    //no value at all, the solver fills the grid only with choices
+    private static final String EMPTY = "000000000000000000000000000000000000000000000000000000000000000000000000000000000";
+
+    @Param({EASY, HARD, EMPTY})
+    public String grid;
+
+    private final Sudoku mSudoku = new Sudoku();
+    private final int[] mValues = new int[81];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < 81; i++) {
+            mValues[i] = grid.charAt(i) - '0';
+        }
+    }
+
+    @Benchmark
+    public Sudoku solve() {
+        mSudoku.solve(mValues);
+        return mSudoku;
+    }
+}
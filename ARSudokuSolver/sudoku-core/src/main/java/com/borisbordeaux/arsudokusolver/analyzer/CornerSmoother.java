@@ -0,0 +1,62 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+
+public class CornerSmoother {
+
+    //under this displacement in pixels, the move of a corner is considered as jitter
+    private final double mJitter;
+
+    //weight of the new position of a corner which does not move at all
+    private final double mMinAlpha;
+
+    //the smoothed positions, x and y of each of the 4 corners
+    private final float[] mSmoothed = new float[8];
+    private boolean mInitialized = false;
+
+    /**
+     * Constructor
+     *
+     * @param jitter   under this displacement in pixels, the move of a corner is partially filtered
+     * @param minAlpha the weight in [0..1] of the new position of a corner which does not move at all
+     */
+    public CornerSmoother(double jitter, double minAlpha) {
+        mJitter = jitter;
+        mMinAlpha = minAlpha;
+    }
+
+    /**
+     * Forgets the previous positions, the next update will not be smoothed
+     */
+    public void reset() {
+        mInitialized = false;
+    }
+
+    /**
+     * Smooths the given corners with an exponential filter. The weight of the new
+     * position of each corner grows with its displacement, so that small jumps
+     * are filtered while real moves are followed without delay
+     *
+     * @param corners the x and y of the 4 corners, replaced by the smoothed positions
+     */
+    public void update(@NotNull float[] corners) {
+        if (!mInitialized) {
+            System.arraycopy(corners, 0, mSmoothed, 0, mSmoothed.length);
+            mInitialized = true;
+            return;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            double dx = corners[2 * i] - mSmoothed[2 * i];
+            double dy = corners[2 * i + 1] - mSmoothed[2 * i + 1];
+            double displacement = Math.sqrt(dx * dx + dy * dy);
+
+            double alpha = displacement >= mJitter ? 1 : mMinAlpha + (1 - mMinAlpha) * displacement / mJitter;
+
+            mSmoothed[2 * i] += alpha * dx;
+            mSmoothed[2 * i + 1] += alpha * dy;
+        }
+
+        System.arraycopy(mSmoothed, 0, corners, 0, mSmoothed.length);
+    }
+}
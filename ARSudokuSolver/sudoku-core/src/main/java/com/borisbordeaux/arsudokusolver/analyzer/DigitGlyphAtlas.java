@@ -0,0 +1,105 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import com.borisbordeaux.arsudokusolver.utils.image.MatArena;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+public class DigitGlyphAtlas {
+
+    private final int FONT = Imgproc.FONT_HERSHEY_PLAIN;
+    private final double FONT_SCALE = 6;
+
+    //thickness of the digits given in the grid and of the digits found by the solver
+    private final int INIT_THICKNESS = 7;
+    private final int SOLVED_THICKNESS = 3;
+
+    private final int mCellSize;
+
+    //all glyphs rendered once, first row for the init digits, second row for the solved digits
+    //the column i contains the digit i + 1
+    private final Mat mAtlas;
+    private final Mat mMasks;
+
+    //views on the glyphs and masks of the atlas, index is the digit
+    private final Mat[] mInitGlyphs = new Mat[10];
+    private final Mat[] mInitMasks = new Mat[10];
+    private final Mat[] mSolvedGlyphs = new Mat[10];
+    private final Mat[] mSolvedMasks = new Mat[10];
+
+    private final MatArena mArena = new MatArena();
+
+    /**
+     * Constructor, renders digits 1 to 9 in both thicknesses
+     *
+     * @param cellSize the size of a cell, each glyph is a square of that size
+     * @param margin   the margin of the cell in which no digit is drawn
+     * @param color    the color of the digits, the background is black
+     */
+    public DigitGlyphAtlas(int cellSize, int margin, @NotNull Scalar color) {
+        mCellSize = cellSize;
+        mAtlas = Mat.zeros(2 * cellSize, 9 * cellSize, CvType.CV_8UC3);
+
+        Point origin = new Point();
+        for (int digit = 1; digit <= 9; digit++) {
+            origin.x = (digit - 1) * cellSize + margin + 3;
+            origin.y = cellSize - margin - 3;
+            Imgproc.putText(mAtlas, String.valueOf(digit), origin, FONT, FONT_SCALE, color, INIT_THICKNESS);
+            origin.y += cellSize;
+            Imgproc.putText(mAtlas, String.valueOf(digit), origin, FONT, FONT_SCALE, color, SOLVED_THICKNESS);
+        }
+
+        //the masks are the pixels drawn
+        mMasks = new Mat();
+        Imgproc.cvtColor(mAtlas, mMasks, Imgproc.COLOR_RGB2GRAY);
+        Imgproc.threshold(mMasks, mMasks, 0, 255, Imgproc.THRESH_BINARY);
+
+        for (int digit = 1; digit <= 9; digit++) {
+            int colStart = (digit - 1) * cellSize;
+            mInitGlyphs[digit] = mAtlas.submat(0, cellSize, colStart, colStart + cellSize);
+            mInitMasks[digit] = mMasks.submat(0, cellSize, colStart, colStart + cellSize);
+            mSolvedGlyphs[digit] = mAtlas.submat(cellSize, 2 * cellSize, colStart, colStart + cellSize);
+            mSolvedMasks[digit] = mMasks.submat(cellSize, 2 * cellSize, colStart, colStart + cellSize);
+        }
+    }
+
+    /**
+     * Copies the glyph of the given digit in the given cell of the given square grid image
+     *
+     * @param dst       the square grid image, of the same type as the atlas
+     * @param row       the row of the cell, in [0..8]
+     * @param col       the column of the cell, in [0..8]
+     * @param digit     the digit to draw, in [1..9]
+     * @param initValue true to draw the digit as given in the grid, false to draw it as found by the solver
+     */
+    public void draw(@NotNull Mat dst, int row, int col, int digit, boolean initValue) {
+        int rowStart = row * mCellSize;
+        int colStart = col * mCellSize;
+        try (MatArena arena = mArena.begin()) {
+            Mat cell = arena.add(dst.submat(rowStart, rowStart + mCellSize, colStart, colStart + mCellSize));
+            if (initValue) {
+                mInitGlyphs[digit].copyTo(cell, mInitMasks[digit]);
+            } else {
+                mSolvedGlyphs[digit].copyTo(cell, mSolvedMasks[digit]);
+            }
+        }
+    }
+
+    /**
+     * Frees the memory of the atlas, it must not be used after this call
+     */
+    public void release() {
+        for (int digit = 1; digit <= 9; digit++) {
+            mInitGlyphs[digit].release();
+            mInitMasks[digit].release();
+            mSolvedGlyphs[digit].release();
+            mSolvedMasks[digit].release();
+        }
+        mAtlas.release();
+        mMasks.release();
+    }
+}
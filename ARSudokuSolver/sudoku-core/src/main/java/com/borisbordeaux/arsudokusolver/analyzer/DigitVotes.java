@@ -0,0 +1,135 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Accumulates the values read in each cell of a grid over several frames.
+ * Each read is a vote for a value in a cell, the value of a cell is the
+ * one with the most votes, so that a single blurry frame does not spoil the grid
+ */
+public class DigitVotes {
+
+    //the number of votes of each value 0..9 for each cell, cell index * 10 + value
+    private final int[] mVotes = new int[81 * 10];
+
+    //the number of votes of each cell
+    private final int[] mTotals = new int[81];
+
+    //minimum number of votes of a cell before its value can be trusted
+    private final int mMinVotes;
+
+    //minimum part of the votes of a cell the most voted value must have
+    private final double mMinAgreement;
+
+    /**
+     * Constructor
+     *
+     * @param minVotes     the number of votes a cell needs before its value can be trusted
+     * @param minAgreement the part of the votes of a cell, in ]0..1], the most voted value needs to be trusted
+     */
+    public DigitVotes(int minVotes, double minAgreement) {
+        mMinVotes = minVotes;
+        mMinAgreement = minAgreement;
+    }
+
+    /**
+     * Removes all the votes
+     */
+    public void reset() {
+        Arrays.fill(mVotes, 0);
+        Arrays.fill(mTotals, 0);
+    }
+
+    /**
+     * Adds one vote for the given value in the given cell
+     *
+     * @param cell  the index of the cell, in [0..80]
+     * @param value the value read in the cell, in [0..9]
+     */
+    public void add(int cell, int value) {
+        if (value < 0 || value > 9) {
+            return;
+        }
+        mVotes[cell * 10 + value]++;
+        mTotals[cell]++;
+    }
+
+    /**
+     * Getter for the number of votes of the given cell
+     *
+     * @param cell the index of the cell, in [0..80]
+     * @return the number of values read in the cell
+     */
+    public int getVotes(int cell) {
+        return mTotals[cell];
+    }
+
+    /**
+     * Getter for the most voted value of the given cell
+     *
+     * @param cell the index of the cell, in [0..80]
+     * @return the value with the most votes, 0 if the cell has no vote
+     */
+    public int getValue(int cell) {
+        int best = 0;
+        for (int value = 1; value <= 9; value++) {
+            if (mVotes[cell * 10 + value] > mVotes[cell * 10 + best]) {
+                best = value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Indicates whether the value of the given cell can be trusted: the cell has
+     * enough votes and its most voted value has enough of them
+     *
+     * @param cell the index of the cell, in [0..80]
+     * @return true if the cell is confident, false otherwise
+     */
+    public boolean isConfident(int cell) {
+        int total = mTotals[cell];
+        return total >= mMinVotes && mVotes[cell * 10 + getValue(cell)] >= mMinAgreement * total;
+    }
+
+    /**
+     * Indicates whether all the cells of the grid are confident
+     *
+     * @return true if the whole grid can be trusted, false otherwise
+     */
+    public boolean isConfident() {
+        for (int cell = 0; cell < 81; cell++) {
+            if (!isConfident(cell)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether each cell of the grid has been read at least once
+     *
+     * @return true if all the cells have votes, false otherwise
+     */
+    public boolean isCovered() {
+        for (int cell = 0; cell < 81; cell++) {
+            if (mTotals[cell] == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fills the given array with the most voted value of each cell
+     *
+     * @param grid the array that will contain the 81 values
+     */
+    public void getGrid(@NotNull int[] grid) {
+        for (int cell = 0; cell < 81; cell++) {
+            grid[cell] = getValue(cell);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import com.borisbordeaux.arsudokusolver.utils.image.BufferPool;
+import com.borisbordeaux.arsudokusolver.utils.image.MatArena;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GridDetector {
+
+    //the detection is done on the image downscaled by this factor (one pyramid level)
+    private final int SCALE = 2;
+
+    //block size of the adaptive threshold on the downscaled image, for images of the reference size
+    //it is 13 at full resolution
+    private final int BLOCK_SIZE = 7;
+    private int mBlockSize = BLOCK_SIZE;
+
+    //margin added on each side of the previous grid to get the region of interest, relative to the grid size
+    private final double ROI_MARGIN = 0.25;
+
+    //window used to refine the corners at full resolution
+    private final Size REFINE_WINDOW = new Size(SCALE * 2 + 1, SCALE * 2 + 1);
+    private final Size NO_ZERO_ZONE = new Size(-1, -1);
+    private final TermCriteria CRITERIA = new TermCriteria(TermCriteria.COUNT | TermCriteria.EPS, 20, 0.03);
+
+    //minimum area of the grid in the downscaled image, for images of the reference size then for the actual size
+    private final double mReferenceMinArea;
+    private double mMinArea;
+
+    //buffers reused for each detection
+    private final Mat mSmall;
+    private final Mat mHierarchy;
+    private final List<MatOfPoint> mContours = new ArrayList<>();
+    private final MatOfPoint2f mContourFloat;
+    private final MatOfPoint2f mPoly;
+    private final MatOfPoint2f mBest;
+    private final float[] mCorners = new float[8];
+    private final MatArena mArena = new MatArena();
+
+    /**
+     * Constructor
+     *
+     * @param minArea the minimum area of a grid at full resolution
+     * @param pool    the pool that will own the buffers reused for each detection
+     */
+    public GridDetector(double minArea, @NotNull BufferPool pool) {
+        mReferenceMinArea = minArea / (SCALE * SCALE);
+        mMinArea = mReferenceMinArea;
+        mSmall = pool.register(new Mat());
+        mHierarchy = pool.register(new Mat());
+        mContourFloat = pool.register(new MatOfPoint2f());
+        mPoly = pool.register(new MatOfPoint2f());
+        mBest = pool.register(new MatOfPoint2f());
+    }
+
+    /**
+     * Adapts the thresholds to images of a different size than the reference one
+     *
+     * @param scale the size of the images divided by the reference size
+     */
+    public void setScale(double scale) {
+        mMinArea = mReferenceMinArea * scale * scale;
+        //the block size must stay odd
+        mBlockSize = Math.max(3, (int) Math.round(BLOCK_SIZE * scale) | 1);
+    }
+
+    /**
+     * Finds the max area quadrilateral contour in the given grayscale image.
+     * The search is done on the downscaled image, only around the previous grid if
+     * any, then the corners are refined at full resolution
+     *
+     * @param gray     the grayscale image in which the grid is searched
+     * @param previous the corners of the grid in the previous frame, null to search in the whole image
+     * @param corners  the Mat that will contain the 4 corners of the grid found, not sorted
+     * @return true if a grid was found, false otherwise
+     */
+    public boolean detect(@NotNull Mat gray, @Nullable MatOfPoint2f previous, @NotNull MatOfPoint2f corners) {
+        Rect roi = getRegionOfInterest(gray, previous);
+
+        //threshold and find the contours on the downscaled region
+        double maxArea;
+        try (MatArena arena = mArena.begin()) {
+            Mat region = arena.add(gray.submat(roi));
+            Imgproc.pyrDown(region, mSmall);
+            Imgproc.adaptiveThreshold(mSmall, mSmall, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, Imgproc.THRESH_BINARY_INV, mBlockSize, 5);
+            Imgproc.findContours(mSmall, mContours, mHierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+
+            //the contours are allocated by OpenCV for each detection
+            arena.addAll(mContours);
+            maxArea = findBestQuadrilateral();
+        }
+        mContours.clear();
+
+        if (maxArea == 0) {
+            return false;
+        }
+
+        //back to full resolution coordinates
+        mBest.get(0, 0, mCorners);
+        for (int i = 0; i < 4; i++) {
+            mCorners[2 * i] = mCorners[2 * i] * SCALE + roi.x;
+            mCorners[2 * i + 1] = mCorners[2 * i + 1] * SCALE + roi.y;
+        }
+        corners.create(4, 1, CvType.CV_32FC2);
+        corners.put(0, 0, mCorners);
+
+        //the downscaling lost precision, refine the corners on the full resolution image
+        Imgproc.cornerSubPix(gray, corners, REFINE_WINDOW, NO_ZERO_ZONE, CRITERIA);
+
+        return true;
+    }
+
+    /**
+     * Searches the max area quadrilateral among the contours found,
+     * its corners are copied in the best buffer
+     *
+     * @return the area of the quadrilateral found, 0 if none was found
+     */
+    private double findBestQuadrilateral() {
+        double maxArea = 0;
+
+        //for each contour
+        for (MatOfPoint contour : mContours) {
+            //compute the area
+            double area = Imgproc.contourArea(contour);
+            //if the area is big enough and bigger than the last one found
+            if (area > mMinArea && area > maxArea) {
+                //convert contour points to float points without copy in java
+                contour.convertTo(mContourFloat, CvType.CV_32F);
+
+                //it allows to compute the perimeter
+                double peri = Imgproc.arcLength(mContourFloat, true);
+
+                //contours are made of a lot of points
+                //approximation with a minimum number of points
+                Imgproc.approxPolyDP(mContourFloat, mPoly, 0.01 * peri, true);
+
+                //if the contour has 4 points
+                if (mPoly.total() == 4) {
+                    //we keep this contour
+                    mPoly.copyTo(mBest);
+                    maxArea = area;
+                }
+            }
+        }
+
+        return maxArea;
+    }
+
+    /**
+     * Computes the region in which the grid is searched, it is the bounding box of
+     * the previous grid with a margin, or the whole image if there is no previous grid.
+     * The region is aligned on the downscaling factor
+     *
+     * @param gray     the image in which the grid is searched
+     * @param previous the corners of the grid in the previous frame, may be null
+     * @return the region of interest
+     */
+    private Rect getRegionOfInterest(Mat gray, MatOfPoint2f previous) {
+        if (previous == null || previous.total() != 4) {
+            return new Rect(0, 0, gray.cols() - gray.cols() % SCALE, gray.rows() - gray.rows() % SCALE);
+        }
+
+        Rect box = Imgproc.boundingRect(previous);
+        int marginX = (int) (box.width * ROI_MARGIN);
+        int marginY = (int) (box.height * ROI_MARGIN);
+
+        int x = Math.max(0, box.x - marginX);
+        int y = Math.max(0, box.y - marginY);
+        int right = Math.min(gray.cols(), box.x + box.width + marginX);
+        int bottom = Math.min(gray.rows(), box.y + box.height + marginY);
+
+        x -= x % SCALE;
+        y -= y % SCALE;
+        int width = (right - x) - (right - x) % SCALE;
+        int height = (bottom - y) - (bottom - y) % SCALE;
+
+        return new Rect(x, y, width, height);
+    }
+}
@@ -0,0 +1,72 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The occupancy pattern of a grid: one bit for each of the 81 cells, set when the cell contains
+ * a digit. It is cheap to compute from the warped grid and recognizes a grid seen before without
+ * reading its digits, two patterns of the same grid may differ by a few cells read in a blurry frame
+ */
+public class GridFingerprint {
+
+    //bits of the cells 0 to 63, then of the cells 64 to 80
+    private final long mLow;
+    private final long mHigh;
+
+    /**
+     * Constructor
+     *
+     * @param occupied the 81 cells of the grid, true for the cells containing a digit
+     */
+    public GridFingerprint(@NotNull boolean[] occupied) {
+        long low = 0;
+        long high = 0;
+        for (int cell = 0; cell < 81; cell++) {
+            if (occupied[cell]) {
+                if (cell < 64) {
+                    low |= 1L << cell;
+                } else {
+                    high |= 1L << (cell - 64);
+                }
+            }
+        }
+        mLow = low;
+        mHigh = high;
+    }
+
+    /**
+     * Computes the number of cells whose occupancy differs between both fingerprints
+     *
+     * @param other the fingerprint to compare with
+     * @return the Hamming distance between both fingerprints, in [0..81]
+     */
+    public int distance(@NotNull GridFingerprint other) {
+        return Long.bitCount(mLow ^ other.mLow) + Long.bitCount(mHigh ^ other.mHigh);
+    }
+
+    /**
+     * Getter for the number of cells containing a digit
+     *
+     * @return the number of occupied cells
+     */
+    public int getOccupiedCells() {
+        return Long.bitCount(mLow) + Long.bitCount(mHigh);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GridFingerprint)) {
+            return false;
+        }
+        GridFingerprint other = (GridFingerprint) o;
+        return mLow == other.mLow && mHigh == other.mHigh;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Long.hashCode(mLow) + Long.hashCode(mHigh);
+    }
+}
@@ -0,0 +1,190 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import com.borisbordeaux.arsudokusolver.utils.image.BufferPool;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfFloat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+import org.opencv.video.Video;
+
+public class GridTracker {
+
+    //size of the search window of the optical flow at each pyramid level
+    private final Size WINDOW_SIZE = new Size(21, 21);
+
+    //number of pyramid levels of the optical flow, allows fast moves
+    private final int MAX_LEVEL = 3;
+
+    private final TermCriteria CRITERIA = new TermCriteria(TermCriteria.COUNT | TermCriteria.EPS, 20, 0.03);
+
+    //window used to snap the followed corners on the real corners of the grid
+    private final Size REFINE_WINDOW = new Size(5, 5);
+    private final Size NO_ZERO_ZONE = new Size(-1, -1);
+
+    //over this mean pixel difference around a corner, the corner is considered lost
+    private final float MAX_ERROR = 30;
+
+    //maximum area change of the grid between two frames
+    private final double MAX_AREA_RATIO = 1.25;
+
+    //number of tracked frames after which a full detection is forced
+    //the corners are refined each frame so the drift is slow
+    private final int MAX_TRACKED_FRAMES = 60;
+
+    //minimum area of the grid, same as the full detection
+    //given for the reference size of the images, then scaled to their actual size
+    private final double mReferenceMinArea;
+    private double mMinArea;
+
+    private final Mat mPrevGray;
+    private final MatOfPoint2f mPrevCorners;
+    private final MatOfPoint2f mNextCorners;
+    private final MatOfByte mStatus;
+    private final MatOfFloat mErrors;
+    private final float[] mCorners = new float[8];
+    private final byte[] mStatusValues = new byte[4];
+    private final float[] mErrorValues = new float[4];
+
+    private boolean mLocked = false;
+    private int mTrackedFrames = 0;
+
+    /**
+     * Constructor
+     *
+     * @param minArea the minimum area of a tracked grid, under it the grid is considered lost
+     * @param pool    the pool that will own the buffers reused for each frame
+     */
+    public GridTracker(double minArea, @NotNull BufferPool pool) {
+        mReferenceMinArea = minArea;
+        mMinArea = minArea;
+        mPrevGray = pool.register(new Mat());
+        mPrevCorners = pool.register(new MatOfPoint2f());
+        mNextCorners = pool.register(new MatOfPoint2f());
+        mStatus = pool.register(new MatOfByte());
+        mErrors = pool.register(new MatOfFloat());
+    }
+
+    /**
+     * Adapts the thresholds to images of a different size than the reference one,
+     * the grid is unlocked since its corners were found in images of the previous size
+     *
+     * @param scale the size of the images divided by the reference size
+     */
+    public void setScale(double scale) {
+        mMinArea = mReferenceMinArea * scale * scale;
+        unlock();
+    }
+
+    /**
+     * Starts following the given corners of a grid detected in the given image
+     *
+     * @param gray    the grayscale image in which the grid was detected
+     * @param corners the 4 corners of the grid, sorted
+     */
+    public void lock(@NotNull Mat gray, @NotNull MatOfPoint2f corners) {
+        gray.copyTo(mPrevGray);
+        corners.copyTo(mPrevCorners);
+        mLocked = true;
+        mTrackedFrames = 0;
+    }
+
+    /**
+     * Stops following the grid, the next frame will need a full detection
+     */
+    public void unlock() {
+        mLocked = false;
+    }
+
+    /**
+     * Follows the corners of the grid from the previous image to the given one
+     * using a sparse optical flow. If the tracking is not confident enough, the
+     * grid is unlocked so that a full detection is done
+     *
+     * @param gray    the grayscale image in which the grid is searched
+     * @param corners the Mat that will contain the 4 corners of the grid, in the same order as the locked ones
+     * @return true if the grid was followed, false if a full detection is needed
+     */
+    public boolean track(@NotNull Mat gray, @NotNull MatOfPoint2f corners) {
+        if (!mLocked) {
+            return false;
+        }
+
+        if (++mTrackedFrames > MAX_TRACKED_FRAMES) {
+            mLocked = false;
+            return false;
+        }
+
+        Video.calcOpticalFlowPyrLK(mPrevGray, gray, mPrevCorners, mNextCorners, mStatus, mErrors, WINDOW_SIZE, MAX_LEVEL, CRITERIA);
+
+        if (!isConfident()) {
+            mLocked = false;
+            return false;
+        }
+
+        //the optical flow accumulates small errors, snap the corners back on the grid
+        Imgproc.cornerSubPix(gray, mNextCorners, REFINE_WINDOW, NO_ZERO_ZONE, CRITERIA);
+
+        gray.copyTo(mPrevGray);
+        mNextCorners.copyTo(mPrevCorners);
+        mNextCorners.copyTo(corners);
+        return true;
+    }
+
+    /**
+     * Indicates whether the corners found by the optical flow still describe the grid:
+     * all corners are found with a small error, and they form a convex
+     * quadrilateral whose area is close to the previous one
+     *
+     * @return true if the tracking can be trusted, false otherwise
+     */
+    private boolean isConfident() {
+        if (mStatus.total() != 4) {
+            return false;
+        }
+
+        mStatus.get(0, 0, mStatusValues);
+        mErrors.get(0, 0, mErrorValues);
+        for (int i = 0; i < 4; i++) {
+            if (mStatusValues[i] == 0 || mErrorValues[i] > MAX_ERROR) {
+                return false;
+            }
+        }
+
+        double area = Imgproc.contourArea(mNextCorners);
+        double prevArea = Imgproc.contourArea(mPrevCorners);
+        if (area < mMinArea || area > prevArea * MAX_AREA_RATIO || area * MAX_AREA_RATIO < prevArea) {
+            return false;
+        }
+
+        return isConvex(mNextCorners);
+    }
+
+    /**
+     * Indicates whether the given quadrilateral is convex, which
+     * is the case when all its turns are in the same direction
+     *
+     * @param quad the 4 points of the quadrilateral, in order
+     * @return true if the quadrilateral is convex, false otherwise
+     */
+    private boolean isConvex(MatOfPoint2f quad) {
+        quad.get(0, 0, mCorners);
+        int sign = 0;
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            int k = (i + 2) % 4;
+            double cross = (mCorners[2 * j] - mCorners[2 * i]) * (mCorners[2 * k + 1] - mCorners[2 * j + 1])
+                    - (mCorners[2 * j + 1] - mCorners[2 * i + 1]) * (mCorners[2 * k] - mCorners[2 * j]);
+            int s = cross > 0 ? 1 : -1;
+            if (sign != 0 && s != sign) {
+                return false;
+            }
+            sign = s;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,73 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+
+public class Homography {
+
+    /**
+     * Computes the perspective transformation from a square of the given size,
+     * with its top left corner at the origin, to the given quadrilateral.
+     * Same result as Imgproc.getPerspectiveTransform without any allocation
+     *
+     * @param size    the size of the square
+     * @param corners the x and y of the 4 corners of the quadrilateral: top left, top right, bottom right, bottom left
+     * @param dst     the 9 values of the 3x3 transformation, row by row
+     * @return false if the quadrilateral is degenerated, true otherwise
+     */
+    public static boolean squareToQuad(double size, @NotNull float[] corners, @NotNull double[] dst) {
+        double x0 = corners[0], y0 = corners[1];
+        double x1 = corners[2], y1 = corners[3];
+        double x2 = corners[4], y2 = corners[5];
+        double x3 = corners[6], y3 = corners[7];
+
+        double dx1 = x1 - x2, dx2 = x3 - x2, dx3 = x0 - x1 + x2 - x3;
+        double dy1 = y1 - y2, dy2 = y3 - y2, dy3 = y0 - y1 + y2 - y3;
+
+        double det = dx1 * dy2 - dx2 * dy1;
+        if (det == 0) {
+            return false;
+        }
+
+        //transformation from the unit square
+        double g = (dx3 * dy2 - dx2 * dy3) / det;
+        double h = (dx1 * dy3 - dx3 * dy1) / det;
+
+        //scaled to the size of the square
+        dst[0] = (x1 - x0 + g * x1) / size;
+        dst[1] = (x3 - x0 + h * x3) / size;
+        dst[2] = x0;
+        dst[3] = (y1 - y0 + g * y1) / size;
+        dst[4] = (y3 - y0 + h * y3) / size;
+        dst[5] = y0;
+        dst[6] = g / size;
+        dst[7] = h / size;
+        dst[8] = 1;
+        return true;
+    }
+
+    /**
+     * Computes the inverse of the given transformation, normalized so that its last value is 1
+     *
+     * @param src the 9 values of the 3x3 transformation to invert, row by row
+     * @param dst the 9 values of the inverse, row by row
+     * @return false if the transformation is not invertible, true otherwise
+     */
+    public static boolean invert(@NotNull double[] src, @NotNull double[] dst) {
+        //the adjugate is the inverse up to a scale, it is normalized by its last value
+        double a8 = src[0] * src[4] - src[1] * src[3];
+        if (a8 == 0) {
+            return false;
+        }
+
+        dst[0] = (src[4] * src[8] - src[5] * src[7]) / a8;
+        dst[1] = (src[2] * src[7] - src[1] * src[8]) / a8;
+        dst[2] = (src[1] * src[5] - src[2] * src[4]) / a8;
+        dst[3] = (src[5] * src[6] - src[3] * src[8]) / a8;
+        dst[4] = (src[0] * src[8] - src[2] * src[6]) / a8;
+        dst[5] = (src[2] * src[3] - src[0] * src[5]) / a8;
+        dst[6] = (src[3] * src[7] - src[4] * src[6]) / a8;
+        dst[7] = (src[1] * src[6] - src[0] * src[7]) / a8;
+        dst[8] = 1;
+        return true;
+    }
+}
@@ -0,0 +1,849 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import com.borisbordeaux.arsudokusolver.classifier.INumberClassifier;
+import com.borisbordeaux.arsudokusolver.model.Sudoku;
+import com.borisbordeaux.arsudokusolver.utils.image.BufferPool;
+import com.borisbordeaux.arsudokusolver.utils.image.MatArena;
+import com.borisbordeaux.arsudokusolver.utils.perf.StageTimer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+public class ImageProcessor {
+
+    private final int margin = 12;
+    private final int cellSize = 80 + 2 * margin;
+    private final int GRID_SIZE = 9 * cellSize;
+    private final Scalar WHITE = new Scalar(255, 255, 255);
+    private final Scalar GREEN = new Scalar(0, 255, 0);
+    private final Scalar BLACK = new Scalar(0, 0, 0);
+    private final Sudoku sudoku = new Sudoku();
+    private final BufferPool bufferPool;
+    private final MatArena matArena = new MatArena();
+    private final Mat workingImg;
+    //the thresholds in pixels are given for images of this size, and scaled to the processed size
+    private final int REFERENCE_SIZE = 480;
+    private final double MIN_GRID_AREA = 25000;
+    private final int THRESHOLD_BLOCK_SIZE = 13;
+    private int thresholdBlockSize = THRESHOLD_BLOCK_SIZE;
+    private final GridTracker gridTracker;
+    private final GridDetector gridDetector;
+    private final MatOfPoint2f foundContour;
+    private final MatOfPoint2f gridCorners;
+    private boolean gridInLastFrame = false;
+    //the full detection can be run once every few frames when no grid is followed
+    private int detectionInterval = 1;
+    private int framesWithoutDetection = 0;
+    private final double CORNER_JITTER = 3;
+    private CornerSmoother cornerSmoother = new CornerSmoother(CORNER_JITTER, 0.3);
+    private final MatOfPoint2f smoothedCorners;
+    private final float[] cornerValues = new float[8];
+    private final Point lineStart = new Point();
+    private final Point lineEnd = new Point();
+    //number of frames without grid before the grid is considered lost
+    private final int GRACE_FRAMES = 5;
+    private int missedFrames = 0;
+    //perspective transform from the square to the grid, computed in java without allocation
+    private final double[] fromSquareValues = new double[9];
+    //the grid is read in a square whose cells are at the input size of the classifier
+    private final int RECOGNITION_CELL_SIZE = 28;
+    private final int RECOGNITION_SIZE = 9 * RECOGNITION_CELL_SIZE;
+    private final Mat recognitionImg;
+    private final Mat[] recognitionCells = new Mat[81];
+    private final Mat transformToCells;
+    private final double[] toCellsValues = new double[9];
+    private final Mat overlay;
+    private final DigitGlyphAtlas glyphAtlas = new DigitGlyphAtlas(cellSize, margin, WHITE);
+    private final Mat perspectiveSudoku;
+    private final Mat boxTransform;
+    private final double[] transformValues = new double[9];
+    private boolean overlayDirty = false;
+    private boolean overlayEmpty = true;
+    private boolean previousGrid = false;
+    private boolean hasToScan = false;
+    //auto scan: while the grid is stable it is read on each frame and the values read are voted
+    private boolean autoScan = false;
+    private final DigitVotes digitVotes = new DigitVotes(3, 0.7);
+    private final int[] readValues = new int[81];
+    //after this number of frames of reads the grid is solved with the most voted values, even if some cells are not confident
+    //each frame only reads the cells fitting in the recognition budget, 30 frames (1 s at 30 fps) let each cell get its
+    //3 votes at 8 cells per frame, and the grid is never solved before each cell has been read at least once
+    private final int MAX_VOTING_READS = 30;
+    private int votingReads = 0;
+    //the grid is stable when its corners moved less than this mean distance in pixels for several frames
+    private final double STABLE_MOTION = 2;
+    private double stableMotion = STABLE_MOTION;
+    private final int STABLE_FRAMES = 3;
+    private int stableFrames = 0;
+    private final float[] previousCornerValues = new float[8];
+    //the cells are classified over several frames, a few cells per frame within a time budget
+    private final RecognitionScheduler recognitionScheduler = new RecognitionScheduler(0, 0.2);
+    private final int[] scheduledCells = new int[81];
+    //the cells read since the scan was requested, each cell is read once
+    private final DigitVotes scanReads = new DigitVotes(1, 0);
+    //arrays given to the classifier, indexed by the number of cells classified
+    private final Mat[][] cellBatches = new Mat[82][];
+    private final int[][] valueBatches = new int[82][];
+    //the last sudokus solved, restored without reading them when their grid comes back
+    private final SolutionCache solutionCache = new SolutionCache(8, 4);
+    //a cell contains a digit when this part of the center of the cell is white in the thresholded grid
+    private final double OCCUPIED_RATIO = 0.1;
+    private final int CENTER_MARGIN = 6;
+    private final Mat[] cellCenters = new Mat[81];
+    private final boolean[] occupiedCells = new boolean[81];
+    private final int[] solutionValues = new int[81];
+    private boolean fingerprintChecked = false;
+    //the layout of the grid is not enough, some of its digits are read to confirm the solution found
+    private final int VERIFIED_CELLS = 4;
+    private final int[] verifiedCells = new int[VERIFIED_CELLS];
+    private INumberClassifier numberClassifier = null;
+    private StageTimer stageTimer = null;
+
+    /**
+     * Constructor, the processor owns its buffers
+     */
+    public ImageProcessor() {
+        this(new BufferPool());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param pool the pool that will own the buffers reused between frames
+     */
+    public ImageProcessor(@NotNull BufferPool pool) {
+        bufferPool = pool;
+        workingImg = pool.register(new Mat());
+        gridTracker = new GridTracker(MIN_GRID_AREA, pool);
+        gridDetector = new GridDetector(MIN_GRID_AREA, pool);
+        foundContour = pool.register(new MatOfPoint2f());
+        gridCorners = pool.register(new MatOfPoint2f());
+        smoothedCorners = pool.register(new MatOfPoint2f());
+        transformToCells = pool.register(new Mat(3, 3, CvType.CV_64FC1));
+        recognitionImg = pool.register(new Mat(RECOGNITION_SIZE, RECOGNITION_SIZE, CvType.CV_8UC1));
+
+        //the cells are views on the recognition square, created once as the square is never reallocated
+        for (int i = 0; i < 81; i++) {
+            int rowStart = (i / 9) * RECOGNITION_CELL_SIZE;
+            int colStart = (i % 9) * RECOGNITION_CELL_SIZE;
+            recognitionCells[i] = recognitionImg.submat(rowStart, rowStart + RECOGNITION_CELL_SIZE, colStart, colStart + RECOGNITION_CELL_SIZE);
+            cellCenters[i] = recognitionImg.submat(rowStart + CENTER_MARGIN, rowStart + RECOGNITION_CELL_SIZE - CENTER_MARGIN,
+                    colStart + CENTER_MARGIN, colStart + RECOGNITION_CELL_SIZE - CENTER_MARGIN);
+        }
+        overlay = pool.register(new Mat());
+        perspectiveSudoku = pool.register(new Mat());
+        boxTransform = pool.register(new Mat(3, 3, CvType.CV_64FC1));
+    }
+
+    /**
+     * Getter for the pool owning the buffers of the processor
+     *
+     * @return the buffer pool
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Setter for the timer measuring the stages of the processing
+     *
+     * @param timer the timer to use, null to disable the measures
+     */
+    public void setStageTimer(@Nullable StageTimer timer) {
+        this.stageTimer = timer;
+    }
+
+    /**
+     * Getter for the classifier
+     *
+     * @return the classifier
+     */
+    public INumberClassifier getNumberClassifier() {
+        return numberClassifier;
+    }
+
+    /**
+     * Setter for the classifier
+     *
+     * @param numberClassifier the classifier to set
+     */
+    public void setNumberClassifier(INumberClassifier numberClassifier) {
+        this.numberClassifier = numberClassifier;
+    }
+
+    /**
+     * Getter for the auto scan mode
+     *
+     * @return true if the grid is read and solved without any request, false otherwise
+     */
+    public boolean isAutoScan() {
+        return autoScan;
+    }
+
+    /**
+     * Setter for the auto scan mode. When enabled, a grid not solved yet is read on each frame
+     * while it is stable, the values read in each cell are voted and the sudoku is solved as
+     * soon as the votes agree
+     *
+     * @param autoScan true to read and solve the grids without any request
+     */
+    public void setAutoScan(boolean autoScan) {
+        this.autoScan = autoScan;
+        resetVotes();
+    }
+
+    /**
+     * Setter for the time a frame can spend classifying cells. The grid is then read over several
+     * frames, the cells not read yet or not confident first, and solved once all of them are read
+     *
+     * @param budgetMs the time budget of the classification in milliseconds, 0 or less to read the whole grid in one frame
+     */
+    public void setRecognitionBudget(double budgetMs) {
+        recognitionScheduler.setBudget(budgetMs);
+    }
+
+    /**
+     * Setter for the size of the images to process, the thresholds in pixels are scaled
+     * to it. The grid followed is forgotten, its corners are not at the same scale
+     *
+     * @param size the width and height in pixels of the square images that will be processed
+     */
+    public void setProcessingSize(int size) {
+        double scale = (double) size / REFERENCE_SIZE;
+        gridDetector.setScale(scale);
+        gridTracker.setScale(scale);
+        //the block size must stay odd
+        thresholdBlockSize = Math.max(3, (int) Math.round(THRESHOLD_BLOCK_SIZE * scale) | 1);
+        stableMotion = STABLE_MOTION * scale;
+        cornerSmoother = new CornerSmoother(CORNER_JITTER * scale, 0.3);
+        gridInLastFrame = false;
+        stableFrames = 0;
+    }
+
+    /**
+     * Setter for the number of frames between two full detections of the grid. The grid is
+     * still searched in each frame around the last one and followed once found, only the
+     * search in the whole image is run less often, to save time on slow devices
+     *
+     * @param interval 1 to search the grid in each frame, n to search it in one frame out of n
+     */
+    public void setDetectionInterval(int interval) {
+        detectionInterval = Math.max(1, interval);
+    }
+
+    /**
+     * Getter for the final image, it processes the image in input and
+     * fills the output with the solved sudoku superposed on the image.
+     * The grid is detected and read on the grayscale image, the color
+     * image is only used for the display
+     *
+     * @param gray the grayscale image to analyse
+     * @param src  the color version of the image to analyse
+     * @param dst  the image that will be filled
+     */
+    public void getFinalImage(@NotNull Mat gray, @NotNull Mat src, @NotNull Mat dst) {
+        src.copyTo(dst);
+
+        //follow the grid found in the previous frames, it is much cheaper than a full detection
+        startStage("track");
+        boolean gridFound = gridTracker.track(gray, gridCorners);
+        stopStage();
+
+        //no grid followed, search a grid around the last one or in the whole image
+        if (!gridFound && (gridInLastFrame || ++framesWithoutDetection >= detectionInterval)) {
+            framesWithoutDetection = 0;
+            startStage("detect");
+            boolean detected = gridDetector.detect(gray, gridInLastFrame ? gridCorners : null, foundContour);
+            stopStage();
+
+            //if a contour has been found (a big square in practice)
+            if (detected) {
+                //sort points to create perspective transformations
+                foundContour.get(0, 0, cornerValues);
+                sortPoints(cornerValues);
+                gridCorners.create(4, 1, CvType.CV_32FC2);
+                gridCorners.put(0, 0, cornerValues);
+                gridTracker.lock(gray, gridCorners);
+                gridFound = true;
+            }
+        }
+        gridInLastFrame = gridFound;
+
+        if (gridFound) {
+            missedFrames = 0;
+
+            //filter the small jumps of the corners so that the overlay does not shimmer
+            gridCorners.get(0, 0, cornerValues);
+            updateStability(cornerValues);
+            cornerSmoother.update(cornerValues);
+            smoothedCorners.create(4, 1, CvType.CV_32FC2);
+            smoothedCorners.put(0, 0, cornerValues);
+
+            //the grid is degenerated, nothing can be drawn on it
+            if (!Homography.squareToQuad(GRID_SIZE, cornerValues, fromSquareValues)) {
+                return;
+            }
+
+            //we draw it on the image
+            drawContour(cornerValues, dst);
+
+            //if no previous grid, then it is likely a new sudoku
+            if (!previousGrid) {
+                resetSudoku();
+            }
+
+            //a grid solved before is restored without reading it, once it is stable
+            if (!previousGrid && !fingerprintChecked && stableFrames >= STABLE_FRAMES) {
+                restoreKnownGrid(gray, cornerValues);
+            }
+
+            //if has to solve the sudoku
+            if (hasToScan) {
+                continueScan(gray, cornerValues);
+            } else if (autoScan && !previousGrid && stableFrames >= STABLE_FRAMES) {
+                voteGrid(gray, cornerValues);
+            }
+
+            //write sudoku in dst image
+            startStage("overlay");
+            writeSudoku(dst, fromSquareValues, smoothedCorners);
+            stopStage();
+        } else {
+            stableFrames = 0;
+            if (++missedFrames > GRACE_FRAMES) { //no contour found for several frames
+                //the grid is lost, the solution is kept if the detection only failed for a few frames
+                previousGrid = false;
+                cornerSmoother.reset();
+                resetVotes();
+                fingerprintChecked = false;
+            }
+        }
+    }
+
+    /**
+     * Detects the grid in the whole given grayscale image and reads its 81 values,
+     * without tracking, solving nor display. Used to process still images
+     *
+     * @param gray the grayscale image to analyse
+     * @param grid the array that will contain the 81 values read, 0 for the empty cells
+     * @return true if a grid was found and read, false otherwise
+     */
+    public boolean scanGrid(@NotNull Mat gray, @NotNull int[] grid) {
+        startStage("detect");
+        boolean detected = gridDetector.detect(gray, null, foundContour);
+        stopStage();
+        if (!detected) {
+            return false;
+        }
+
+        foundContour.get(0, 0, cornerValues);
+        sortPoints(cornerValues);
+
+        startStage("threshold");
+        threshold(gray, workingImg);
+        stopStage();
+
+        return readGrid(workingImg, cornerValues, grid);
+    }
+
+    /**
+     * Getter for the intermediate image, which is the
+     * grayscale input image with an adaptive threshold filter
+     *
+     * @param gray the grayscale input image to get the threshold filter
+     * @param dst  the thresholded image that will be filled
+     */
+    public void getIntermediate(@NotNull Mat gray, @NotNull Mat dst) {
+        threshold(gray, dst);
+    }
+
+    /**
+     * Indicates that the sudoku has to be scanned and solved again
+     */
+    public void reScan() {
+        previousGrid = false;
+        hasToScan = true;
+        resetVotes();
+        //the user asks to read the grid again, the solution kept may be wrong
+        fingerprintChecked = true;
+    }
+
+    /**
+     * Processes the adaptive threshold on the grayscale src {@link Mat}
+     * and fills the dst {@link Mat} with the result
+     *
+     * @param src the grayscale {@link Mat} to filter
+     * @param dst the {@link Mat} that will contain the result
+     */
+    private void threshold(@NotNull Mat src, @NotNull Mat dst) {
+        Imgproc.adaptiveThreshold(src, dst, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, Imgproc.THRESH_BINARY_INV, thresholdBlockSize, 5);
+    }
+
+    /**
+     * Draws the given contour in the given Mat
+     *
+     * @param corners the x and y of the 4 corners of the contour to draw
+     * @param dst     the Mat on which the contour will be drawn
+     */
+    private void drawContour(float[] corners, Mat dst) {
+        for (int i = 0; i < 4; i++) {
+            int j = (i + 1) % 4;
+            lineStart.x = corners[2 * i];
+            lineStart.y = corners[2 * i + 1];
+            lineEnd.x = corners[2 * j];
+            lineEnd.y = corners[2 * j + 1];
+            Imgproc.line(dst, lineStart, lineEnd, GREEN, 2);
+        }
+    }
+
+    /**
+     * Sorts the given 4 points in place in the following order:
+     * top left, top right, bottom right, bottom left
+     *
+     * @param pts the x and y of the 4 points to sort
+     */
+    private void sortPoints(float[] pts) {
+        //sort points top to bottom
+        for (int i = 1; i < 4; i++) {
+            for (int j = i; j > 0 && pts[2 * j + 1] < pts[2 * j - 1]; j--) {
+                swapPoints(pts, j, j - 1);
+            }
+        }
+
+        //adjust left and right
+        //first point needs to be at the left of the second
+        if (pts[2] < pts[0]) {
+            swapPoints(pts, 0, 1);
+        }
+        //third point needs to be at the right of the fourth
+        if (pts[6] > pts[4]) {
+            swapPoints(pts, 2, 3);
+        }
+    }
+
+    /**
+     * Swaps two points of the given array
+     *
+     * @param pts the x and y of the points
+     * @param i   the index of the first point
+     * @param j   the index of the second point
+     */
+    private void swapPoints(float[] pts, int i, int j) {
+        float x = pts[2 * i];
+        float y = pts[2 * i + 1];
+        pts[2 * i] = pts[2 * j];
+        pts[2 * i + 1] = pts[2 * j + 1];
+        pts[2 * j] = x;
+        pts[2 * j + 1] = y;
+    }
+
+    /**
+     * Reads all 81 values of the grid in the given {@link Mat}.
+     * The grid is warped once into a square whose cells are at the input size of the
+     * classifier, the cells are views on that square so they are neither copied nor resized
+     *
+     * @param src     the thresholded {@link Mat} on which to read the values, it is not modified
+     * @param corners the x and y of the 4 sorted corners of the grid in src
+     * @param grid    the array that will contain the 81 values read
+     * @return false if the grid is degenerated, true otherwise
+     */
+    private boolean readGrid(@NotNull Mat src, @NotNull float[] corners, @NotNull int[] grid) {
+        if (!warpGrid(src, corners)) {
+            return false;
+        }
+
+        //read digits of all cells
+        startStage("classify");
+        numberClassifier.getNumbers(recognitionCells, grid);
+        stopStage();
+
+        return true;
+    }
+
+    /**
+     * Reads the cells chosen by the scheduler for this frame and adds the values read to the given votes
+     *
+     * @param src     the thresholded {@link Mat} on which to read the values, it is not modified
+     * @param corners the x and y of the 4 sorted corners of the grid in src
+     * @param votes   the values read in the previous frames, the new values are added
+     * @return false if the grid is degenerated, true otherwise
+     */
+    private boolean readCells(@NotNull Mat src, @NotNull float[] corners, @NotNull DigitVotes votes) {
+        int count = recognitionScheduler.schedule(votes, scheduledCells);
+        if (count == 0) {
+            return true;
+        }
+        if (!warpGrid(src, corners)) {
+            return false;
+        }
+
+        //the arrays given to the classifier are created once for each number of cells
+        if (cellBatches[count] == null) {
+            cellBatches[count] = new Mat[count];
+            valueBatches[count] = new int[count];
+        }
+        Mat[] cells = cellBatches[count];
+        int[] values = valueBatches[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = recognitionCells[scheduledCells[i]];
+        }
+
+        startStage("classify");
+        long start = System.nanoTime();
+        numberClassifier.getNumbers(cells, values);
+        long elapsed = System.nanoTime() - start;
+        stopStage();
+
+        //the cells found in a cache are almost free, only the ones classified give the cost of a cell
+        recognitionScheduler.recordClassification(numberClassifier.getLastClassifiedCount(count), elapsed);
+
+        for (int i = 0; i < count; i++) {
+            votes.add(scheduledCells[i], values[i]);
+        }
+        return true;
+    }
+
+    /**
+     * Warps the grid in the given {@link Mat} into the recognition square
+     *
+     * @param src     the thresholded {@link Mat} containing the grid
+     * @param corners the x and y of the 4 sorted corners of the grid in src
+     * @return false if the grid is degenerated, true otherwise
+     */
+    private boolean warpGrid(@NotNull Mat src, @NotNull float[] corners) {
+        //perspective transform from the grid to the recognition square
+        if (!Homography.squareToQuad(RECOGNITION_SIZE, corners, transformValues) || !Homography.invert(transformValues, toCellsValues)) {
+            return false;
+        }
+
+        startStage("warp");
+        transformToCells.put(0, 0, toCellsValues);
+        Imgproc.warpPerspective(src, recognitionImg, transformToCells, recognitionImg.size());
+        stopStage();
+        return true;
+    }
+
+    /**
+     * Reads the cells of the grid that fit in the budget of the frame,
+     * the sudoku is solved once all the cells are read
+     *
+     * @param gray    the grayscale image containing the grid
+     * @param corners the x and y of the 4 sorted corners of the grid
+     */
+    private void continueScan(@NotNull Mat gray, @NotNull float[] corners) {
+        //the threshold is needed only to read the numbers
+        startStage("threshold");
+        threshold(gray, workingImg);
+        stopStage();
+
+        if (readCells(workingImg, corners, scanReads) && scanReads.isConfident()) {
+            hasToScan = false;
+            previousGrid = true;
+            scanReads.getGrid(readValues);
+            solveSudoku(readValues);
+            rememberSolution(corners, readValues);
+        }
+    }
+
+    /**
+     * Reads the grid and adds the values read to the votes. When all the cells are confident,
+     * or after too many reads, the sudoku is solved with the most voted values.
+     * If these values are not a valid sudoku, the votes start again
+     *
+     * @param gray    the grayscale image containing the grid
+     * @param corners the x and y of the 4 sorted corners of the grid
+     */
+    private void voteGrid(@NotNull Mat gray, @NotNull float[] corners) {
+        startStage("threshold");
+        threshold(gray, workingImg);
+        stopStage();
+
+        if (!readCells(workingImg, corners, digitVotes)) {
+            return;
+        }
+        votingReads++;
+
+        if (digitVotes.isConfident() || (votingReads >= MAX_VOTING_READS && digitVotes.isCovered())) {
+            digitVotes.getGrid(readValues);
+            solveSudoku(readValues);
+            if (sudoku.isError()) {
+                resetSudoku();
+                resetVotes();
+            } else {
+                previousGrid = true;
+                rememberSolution(corners, readValues);
+            }
+        }
+    }
+
+    /**
+     * Searches the grid in the solutions kept from its fingerprint,
+     * a sudoku found is restored and displayed once a few of its digits are confirmed
+     *
+     * @param gray    the grayscale image containing the grid
+     * @param corners the x and y of the 4 sorted corners of the grid
+     */
+    private void restoreKnownGrid(@NotNull Mat gray, @NotNull float[] corners) {
+        fingerprintChecked = true;
+        if (solutionCache.size() == 0) {
+            return;
+        }
+
+        startStage("threshold");
+        threshold(gray, workingImg);
+        stopStage();
+        if (!warpGrid(workingImg, corners)) {
+            return;
+        }
+
+        startStage("fingerprint");
+        SolutionCache.Solution solution = solutionCache.find(computeFingerprint());
+        stopStage();
+        if (solution == null || !verifyDigits(solution.getValues())) {
+            return;
+        }
+
+        sudoku.restore(solution.getValues(), solution.getSolution());
+        previousGrid = true;
+        overlayDirty = true;
+        overlayEmpty = false;
+    }
+
+    /**
+     * Reads a few cells of the grid warped in the recognition square and compares them to the given
+     * values, so that another sudoku with the same layout does not get the solution of this one.
+     * The cells are chosen with different digits among those occupied in both grids
+     *
+     * @param values the 81 values of the sudoku kept, 0 for the empty cells
+     * @return true if the digits read are the ones of the sudoku kept, false otherwise
+     */
+    private boolean verifyDigits(@NotNull int[] values) {
+        if (numberClassifier == null) {
+            return false;
+        }
+
+        int count = 0;
+        int chosenDigits = 0;
+        for (int i = 0; i < 81 && count < VERIFIED_CELLS; i++) {
+            int digit = values[i];
+            if (digit != 0 && occupiedCells[i] && (chosenDigits & (1 << digit)) == 0) {
+                chosenDigits |= 1 << digit;
+                verifiedCells[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return false;
+        }
+
+        //the arrays given to the classifier are created once for each number of cells
+        if (cellBatches[count] == null) {
+            cellBatches[count] = new Mat[count];
+            valueBatches[count] = new int[count];
+        }
+        Mat[] cells = cellBatches[count];
+        int[] read = valueBatches[count];
+        for (int i = 0; i < count; i++) {
+            cells[i] = recognitionCells[verifiedCells[i]];
+        }
+
+        startStage("classify");
+        numberClassifier.getNumbers(cells, read);
+        stopStage();
+
+        for (int i = 0; i < count; i++) {
+            if (read[i] != values[verifiedCells[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the sudoku just solved with the fingerprint of its grid, if it has a solution
+     *
+     * @param corners the x and y of the 4 sorted corners of the grid in the thresholded image
+     * @param values  the 81 values read in the grid
+     */
+    private void rememberSolution(@NotNull float[] corners, @NotNull int[] values) {
+        //the last warp may come from an older frame when the cells were read over several frames
+        if (sudoku.isError() || !warpGrid(workingImg, corners)) {
+            return;
+        }
+        for (int i = 0; i < 81; i++) {
+            solutionValues[i] = sudoku.getValue(i);
+        }
+        solutionCache.put(computeFingerprint(), values, solutionValues);
+    }
+
+    /**
+     * Computes the occupancy pattern of the grid warped in the recognition square
+     *
+     * @return the fingerprint of the grid
+     */
+    private GridFingerprint computeFingerprint() {
+        double minPixels = OCCUPIED_RATIO * cellCenters[0].total();
+        for (int i = 0; i < 81; i++) {
+            occupiedCells[i] = Core.countNonZero(cellCenters[i]) > minPixels;
+        }
+        return new GridFingerprint(occupiedCells);
+    }
+
+    /**
+     * Counts the consecutive frames in which the grid barely moved
+     *
+     * @param corners the x and y of the 4 corners of the grid in the current frame
+     */
+    private void updateStability(@NotNull float[] corners) {
+        double motion = 0;
+        for (int i = 0; i < 4; i++) {
+            motion += Math.hypot(corners[2 * i] - previousCornerValues[2 * i], corners[2 * i + 1] - previousCornerValues[2 * i + 1]);
+        }
+        System.arraycopy(corners, 0, previousCornerValues, 0, 8);
+
+        if (motion / 4 < stableMotion) {
+            stableFrames++;
+        } else {
+            stableFrames = 0;
+        }
+    }
+
+    /**
+     * Removes the votes of the previous reads
+     */
+    private void resetVotes() {
+        digitVotes.reset();
+        scanReads.reset();
+        votingReads = 0;
+    }
+
+    /**
+     * Solves the sudoku with the given values read in the grid
+     *
+     * @param grid the 81 values read, 0 for the empty cells
+     */
+    private void solveSudoku(@NotNull int[] grid) {
+        startStage("solve");
+        sudoku.solve(grid);
+        stopStage();
+
+        //the overlay has to be rendered again
+        overlayDirty = true;
+        overlayEmpty = false;
+    }
+
+    /**
+     * Writes all values of a sudoku in the given {@link Mat} using the given perspective transformation.
+     * The square image of the sudoku is rendered only when the sudoku changed, then only the warp is done,
+     * restricted to the bounding box of the grid
+     *
+     * @param dst        the {@link Mat} on which the sudoku will be drawn in black
+     * @param fromSquare the 9 values of the perspective transform to get a quadrilateral from a square
+     * @param corners    the corners of the grid in the dst {@link Mat}
+     */
+    private void writeSudoku(@NotNull Mat dst, @NotNull double[] fromSquare, @NotNull MatOfPoint2f corners) {
+        //nothing to draw
+        if (overlayEmpty) {
+            return;
+        }
+
+        if (overlayDirty) {
+            renderOverlay();
+        }
+
+        //the part of the image covered by the grid
+        Rect box = Imgproc.boundingRect(corners);
+        int left = Math.max(0, box.x);
+        int top = Math.max(0, box.y);
+        int right = Math.min(dst.cols(), box.x + box.width);
+        int bottom = Math.min(dst.rows(), box.y + box.height);
+        if (right <= left || bottom <= top) {
+            return;
+        }
+
+        //same transformation followed by a translation of the box to the origin
+        System.arraycopy(fromSquare, 0, transformValues, 0, 9);
+        for (int i = 0; i < 3; i++) {
+            transformValues[i] -= left * transformValues[6 + i];
+            transformValues[3 + i] -= top * transformValues[6 + i];
+        }
+        boxTransform.put(0, 0, transformValues);
+
+        try (MatArena arena = matArena.begin()) {
+            //transform the black square in a part of the buffer the size of the box,
+            //the buffer only grows to the biggest box so it is not reallocated when the grid moves
+            int width = right - left;
+            int height = bottom - top;
+            if (perspectiveSudoku.cols() < width || perspectiveSudoku.rows() < height) {
+                perspectiveSudoku.create(Math.max(perspectiveSudoku.rows(), height), Math.max(perspectiveSudoku.cols(), width), CvType.CV_8UC3);
+            }
+            Mat warped = arena.add(perspectiveSudoku.submat(0, height, 0, width));
+            Imgproc.warpPerspective(overlay, warped, boxTransform, warped.size());
+
+            //subtract the sudoku to the box of the image
+            //it displays the sudoku in black
+            Mat dstBox = arena.add(dst.submat(top, bottom, left, right));
+            Core.subtract(dstBox, warped, dstBox);
+        }
+    }
+
+    /**
+     * Renders all values of the sudoku in white in the black square overlay
+     */
+    private void renderOverlay() {
+        //fill a black square
+        overlay.create(GRID_SIZE, GRID_SIZE, CvType.CV_8UC3);
+        overlay.setTo(BLACK);
+        overlayEmpty = true;
+
+        //copy the prerendered digits
+        for (int x = 0; x < 9; x++) {
+            for (int y = 0; y < 9; y++) {
+                int index = y * 9 + x;
+                if (sudoku.getValue(index) != 0) {
+                    glyphAtlas.draw(overlay, y, x, sudoku.getValue(index), sudoku.isInitValue(index));
+                    overlayEmpty = false;
+                }
+            }
+        }
+
+        overlayDirty = false;
+    }
+
+    /**
+     * Starts measuring the given stage if a timer is set
+     *
+     * @param stage the name of the stage
+     */
+    private void startStage(String stage) {
+        if (stageTimer != null) {
+            stageTimer.start(stage);
+        }
+    }
+
+    /**
+     * Stops measuring the running stage if a timer is set
+     */
+    private void stopStage() {
+        if (stageTimer != null) {
+            stageTimer.stop();
+        }
+    }
+
+    /**
+     * Resets the sudoku, there is nothing to draw until the next solution
+     */
+    private void resetSudoku() {
+        sudoku.reset();
+        overlayEmpty = true;
+        overlayDirty = false;
+    }
+
+}
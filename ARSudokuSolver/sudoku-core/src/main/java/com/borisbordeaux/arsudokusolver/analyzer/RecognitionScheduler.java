@@ -0,0 +1,88 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Chooses the cells to classify in a frame so that the classification stays within a time budget.
+ * The number of cells is estimated from the time the previous classifications took, the cells
+ * that are not confident yet are chosen first, those with the fewest reads before the others
+ */
+public class RecognitionScheduler {
+
+    //weight of the last classification in the estimated time of a cell
+    private final double COST_SMOOTHING = 0.3;
+
+    //the budget of a frame, 0 or less to classify all the cells needed at once
+    private double mBudgetNs;
+
+    //estimated time to classify one cell, refined after each classification
+    private double mCellCostNs;
+
+    //the indices of the cells sorted by priority, reused for each frame
+    private final int[] mOrder = new int[81];
+
+    /**
+     * Constructor
+     *
+     * @param budgetMs       the time a frame can spend classifying cells, 0 or less for no limit
+     * @param initialCostMs  the estimated time to classify one cell, until a classification is measured
+     */
+    public RecognitionScheduler(double budgetMs, double initialCostMs) {
+        setBudget(budgetMs);
+        mCellCostNs = initialCostMs * 1e6;
+    }
+
+    /**
+     * Setter for the budget of a frame
+     *
+     * @param budgetMs the time a frame can spend classifying cells, 0 or less for no limit
+     */
+    public void setBudget(double budgetMs) {
+        mBudgetNs = budgetMs * 1e6;
+    }
+
+    /**
+     * Fills the given array with the cells to classify in this frame, by priority.
+     * At least one cell is chosen as long as a cell is not confident, so that a
+     * budget too small for the classifier still ends the reading
+     *
+     * @param votes the values read in the previous frames
+     * @param cells the array of 81 cells that will contain the indices of the cells to classify
+     * @return the number of cells to classify, 0 if all the cells are confident
+     */
+    public int schedule(@NotNull DigitVotes votes, @NotNull int[] cells) {
+        //the cells not confident, sorted by number of votes, insertion sort keeps the order of the grid
+        int nbCells = 0;
+        for (int cell = 0; cell < 81; cell++) {
+            if (votes.isConfident(cell)) {
+                continue;
+            }
+            int i = nbCells++;
+            while (i > 0 && votes.getVotes(mOrder[i - 1]) > votes.getVotes(cell)) {
+                mOrder[i] = mOrder[i - 1];
+                i--;
+            }
+            mOrder[i] = cell;
+        }
+
+        int count = nbCells;
+        if (mBudgetNs > 0) {
+            count = Math.min(nbCells, Math.max(1, (int) (mBudgetNs / mCellCostNs)));
+        }
+        System.arraycopy(mOrder, 0, cells, 0, count);
+        return count;
+    }
+
+    /**
+     * Refines the estimated time of a cell with a classification that was measured
+     *
+     * @param nbCells   the number of cells classified
+     * @param elapsedNs the time of the classification in nanoseconds
+     */
+    public void recordClassification(int nbCells, long elapsedNs) {
+        if (nbCells <= 0) {
+            return;
+        }
+        mCellCostNs += COST_SMOOTHING * ((double) elapsedNs / nbCells - mCellCostNs);
+    }
+}
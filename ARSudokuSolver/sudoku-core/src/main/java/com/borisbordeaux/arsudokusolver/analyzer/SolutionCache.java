@@ -0,0 +1,130 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the last sudokus solved, found back from the {@link GridFingerprint fingerprint} of their grid.
+ * When the capacity is reached, the sudoku used the least recently is forgotten
+ */
+public class SolutionCache {
+
+    /**
+     * A sudoku solved: the values read in its grid and its solution
+     */
+    public static class Solution {
+        private final int[] mValues;
+        private final int[] mSolution;
+
+        private Solution(int[] values, int[] solution) {
+            mValues = values;
+            mSolution = solution;
+        }
+
+        /**
+         * Getter for the values read in the grid
+         *
+         * @return the 81 values, 0 for the empty cells
+         */
+        public int[] getValues() {
+            return mValues;
+        }
+
+        /**
+         * Getter for the solution
+         *
+         * @return the 81 values of the solved sudoku
+         */
+        public int[] getSolution() {
+            return mSolution;
+        }
+    }
+
+    //the entries in access order, the first one is the least recently used
+    private final LinkedHashMap<GridFingerprint, Solution> mEntries;
+
+    //maximum number of cells that can differ between two fingerprints of the same grid
+    private final int mTolerance;
+
+    /**
+     * Constructor
+     *
+     * @param capacity  the maximum number of sudokus kept
+     * @param tolerance the maximum number of cells whose occupancy can differ for a grid to match
+     */
+    public SolutionCache(int capacity, int tolerance) {
+        mTolerance = tolerance;
+        mEntries = new LinkedHashMap<GridFingerprint, Solution>(capacity + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<GridFingerprint, Solution> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Searches the sudoku whose fingerprint is the closest to the given one
+     *
+     * @param fingerprint the fingerprint of the grid
+     * @return the closest sudoku within the tolerance, null if there is none
+     */
+    @Nullable
+    public Solution find(@NotNull GridFingerprint fingerprint) {
+        GridFingerprint closest = findKey(fingerprint);
+        //get marks the entry as the most recently used
+        return closest == null ? null : mEntries.get(closest);
+    }
+
+    /**
+     * Adds a sudoku solved, it replaces the sudoku of the same grid if any
+     *
+     * @param fingerprint the fingerprint of the grid
+     * @param values      the 81 values read in the grid, copied
+     * @param solution    the 81 values of the solution, copied
+     */
+    public void put(@NotNull GridFingerprint fingerprint, @NotNull int[] values, @NotNull int[] solution) {
+        GridFingerprint previous = findKey(fingerprint);
+        if (previous != null) {
+            mEntries.remove(previous);
+        }
+        mEntries.put(fingerprint, new Solution(values.clone(), solution.clone()));
+    }
+
+    /**
+     * Getter for the number of sudokus kept
+     *
+     * @return the number of sudokus in the cache
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Forgets all the sudokus
+     */
+    public void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Searches the closest fingerprint within the tolerance, without changing the access order
+     *
+     * @param fingerprint the fingerprint of the grid
+     * @return the closest fingerprint kept, null if none is close enough
+     */
+    private GridFingerprint findKey(GridFingerprint fingerprint) {
+        GridFingerprint closest = null;
+        int minDistance = mTolerance + 1;
+        for (GridFingerprint key : mEntries.keySet()) {
+            int distance = key.distance(fingerprint);
+            if (distance < minDistance) {
+                closest = key;
+                minDistance = distance;
+            }
+        }
+        return closest;
+    }
+}
@@ -0,0 +1,404 @@
+package com.borisbordeaux.arsudokusolver.classifier;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class CachingNumberClassifier implements INumberClassifier {
+
+    //the classifier used for the cells not in the cache
+    private final INumberClassifier mClassifier;
+
+    //the cells are binarized then reduced to a square of this size, one bit per pixel of the reduced cell
+    private final int SIGNATURE_SIZE = 16;
+
+    //a pixel of the reduced cell is set when half of the pixels it covers are white
+    private final double SIGNATURE_THRESHOLD = 127;
+
+    //a cell is found in the cache when a signature kept differs by at most this number of bits
+    private final int MAX_DISTANCE = 6;
+
+    //the cell is not found if a signature kept with another number differs by at most this number of bits
+    private final int AMBIGUOUS_DISTANCE = 12;
+
+    //the pixels of a cell above this value are white for the classifier
+    private final double mBinaryThreshold;
+
+    //the number found for each signature, in access order so that the least recently used is removed
+    private final LinkedHashMap<CellSignature, Integer> mNumbers;
+
+    //buffers reused for each cell, the signature looked for is only copied when it is added
+    private final CellSignature mLookup = new CellSignature(SIGNATURE_SIZE * SIGNATURE_SIZE);
+    private final Mat mBinary = new Mat();
+    private final Mat mReduced = new Mat();
+    private final Size mReducedSize = new Size(SIGNATURE_SIZE, SIGNATURE_SIZE);
+    private final byte[] mReducedPixels = new byte[SIGNATURE_SIZE * SIGNATURE_SIZE];
+
+    //the smallest distance to a signature kept for each number, in [0..9]
+    private final int[] mDistances = new int[10];
+
+    //the cells not in the cache, indexed by their number, created once for each number of cells
+    private Mat[][] mMissedImages = new Mat[0][];
+    private int[][] mMissedNumbers = new int[0][];
+    private int[] mMissedIndices = new int[0];
+    private CellSignature[] mSignatures = new CellSignature[0];
+
+    private long mHits = 0;
+    private long mMisses = 0;
+    private int mLastMisses = 0;
+
+    //when checked, the cells found in the cache are classified again and the differences counted
+    private boolean mChecked = false;
+    private long mMismatches = 0;
+
+    /**
+     * Constructor
+     *
+     * @param classifier      the classifier to use for the cells not in the cache
+     * @param binaryThreshold the threshold at which the classifier binarizes the cells, so that the
+     *                        signatures compare the pixels the classifier sees
+     * @param capacity        the maximum number of cells kept
+     */
+    public CachingNumberClassifier(@NotNull INumberClassifier classifier, double binaryThreshold, int capacity) {
+        mClassifier = classifier;
+        mBinaryThreshold = binaryThreshold;
+        mNumbers = new LinkedHashMap<CellSignature, Integer>(capacity + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CellSignature, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * Classifies the image only if a cell with a close signature was not classified before
+     *
+     * @param img the image that has to be classified, a thresholded cell
+     * @return the number detected in the image
+     */
+    @Override
+    public synchronized int getNumber(Mat img) {
+        computeSignature(img, mLookup);
+        Integer number = find(mLookup);
+        if (number != null) {
+            mHits++;
+            mLastMisses = 0;
+            check(img, number);
+            return number;
+        }
+
+        mMisses++;
+        mLastMisses = 1;
+        int result = mClassifier.getNumber(img);
+        mNumbers.put(mLookup.copy(), result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only the images not in the cache are given to the classifier, all at once
+     *
+     * @param imgs    the images that have to be classified, thresholded cells
+     * @param numbers the array that will be filled, numbers[i] is the number detected in imgs[i]
+     */
+    @Override
+    public synchronized void getNumbers(Mat[] imgs, int[] numbers) {
+        ensureCapacity(imgs.length);
+
+        //numbers of the cells in the cache, the others are gathered
+        int nbMissed = 0;
+        for (int i = 0; i < imgs.length; i++) {
+            computeSignature(imgs[i], mSignatures[i]);
+            Integer number = find(mSignatures[i]);
+            if (number != null) {
+                numbers[i] = number;
+                check(imgs[i], number);
+            } else {
+                mMissedIndices[nbMissed++] = i;
+            }
+        }
+        mHits += imgs.length - nbMissed;
+        mMisses += nbMissed;
+        mLastMisses = nbMissed;
+        if (nbMissed == 0) {
+            return;
+        }
+
+        if (mMissedImages[nbMissed] == null) {
+            mMissedImages[nbMissed] = new Mat[nbMissed];
+            mMissedNumbers[nbMissed] = new int[nbMissed];
+        }
+        Mat[] missedImages = mMissedImages[nbMissed];
+        int[] missedNumbers = mMissedNumbers[nbMissed];
+        for (int j = 0; j < nbMissed; j++) {
+            missedImages[j] = imgs[mMissedIndices[j]];
+        }
+
+        mClassifier.getNumbers(missedImages, missedNumbers);
+
+        for (int j = 0; j < nbMissed; j++) {
+            int i = mMissedIndices[j];
+            numbers[i] = missedNumbers[j];
+            mNumbers.put(mSignatures[i].copy(), missedNumbers[j]);
+        }
+    }
+
+    /**
+     * Getter for the number of cells found in the cache
+     *
+     * @return the number of hits since the creation or the last reset
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * Getter for the number of cells given to the classifier
+     *
+     * @return the number of misses since the creation or the last reset
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Only the cells not in the cache are classified, the others only cost the computation of their signature
+     *
+     * @param nbImages the number of images given to the last classification
+     * @return the number of cells of the last classification that were not in the cache
+     */
+    @Override
+    public synchronized int getLastClassifiedCount(int nbImages) {
+        return mLastMisses;
+    }
+
+    /**
+     * Getter for the part of the cells found in the cache
+     *
+     * @return the hit rate in [0..1], 0 if no cell was classified
+     */
+    public synchronized double getHitRate() {
+        long total = mHits + mMisses;
+        return total == 0 ? 0 : (double) mHits / total;
+    }
+
+    /**
+     * Enables or disables the check of the cache, used to validate it on recorded frames.
+     * When checked, each cell found in the cache is classified again, which removes the gain of the cache
+     *
+     * @param checked true to classify the cells found in the cache and count the different numbers
+     */
+    public synchronized void setChecked(boolean checked) {
+        mChecked = checked;
+    }
+
+    /**
+     * Getter for the number of cells found in the cache with another number than the classifier gives,
+     * counted only while the cache is checked
+     *
+     * @return the number of mismatches since the creation or the last reset
+     */
+    public synchronized long getMismatches() {
+        return mMismatches;
+    }
+
+    /**
+     * Resets the hit, miss and mismatch counters, the cells kept are not removed
+     */
+    public synchronized void resetStats() {
+        mHits = 0;
+        mMisses = 0;
+        mMismatches = 0;
+    }
+
+    /**
+     * Removes all the cells kept
+     */
+    public synchronized void clear() {
+        mNumbers.clear();
+    }
+
+    /**
+     * Computes the signature of the given cell: the cell binarized as the classifier does, reduced to
+     * 16x16 pixels, one bit per pixel. The reduction averages the small moves of the cell from one frame
+     * to the other, the few bits they still change are accepted by the search of the closest signature
+     *
+     * @param img       the thresholded cell
+     * @param signature the signature that will be filled
+     */
+    private void computeSignature(Mat img, CellSignature signature) {
+        Imgproc.threshold(img, mBinary, mBinaryThreshold, 255, Imgproc.THRESH_BINARY);
+        Imgproc.resize(mBinary, mReduced, mReducedSize, 0, 0, Imgproc.INTER_AREA);
+        mReduced.get(0, 0, mReducedPixels);
+
+        signature.reset();
+        for (int i = 0; i < mReducedPixels.length; i++) {
+            if ((mReducedPixels[i] & 0xFF) > SIGNATURE_THRESHOLD) {
+                signature.set(i);
+            }
+        }
+        signature.updateHash();
+    }
+
+    /**
+     * Searches the number of the signature kept closest to the given one. The cell is not found
+     * if the closest signature is too far, or if a signature of another number is close too,
+     * e.g. a 5 and a 6 whose strokes barely differ
+     *
+     * @param signature the signature of the cell
+     * @return the number of the closest signature, null if the cell is not found
+     */
+    private Integer find(CellSignature signature) {
+        Arrays.fill(mDistances, Integer.MAX_VALUE);
+        CellSignature closest = null;
+        int closestDistance = Integer.MAX_VALUE;
+        for (Map.Entry<CellSignature, Integer> entry : mNumbers.entrySet()) {
+            int distance = signature.distance(entry.getKey());
+            int number = entry.getValue();
+            mDistances[number] = Math.min(mDistances[number], distance);
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = entry.getKey();
+            }
+        }
+        if (closest == null || closestDistance > MAX_DISTANCE) {
+            return null;
+        }
+
+        //gets the entry to mark it as recently used
+        Integer number = mNumbers.get(closest);
+        for (int other = 0; other < mDistances.length; other++) {
+            if (other != number && mDistances[other] <= AMBIGUOUS_DISTANCE) {
+                return null;
+            }
+        }
+        return number;
+    }
+
+    /**
+     * Classifies again a cell found in the cache if the cache is checked
+     *
+     * @param img    the cell found in the cache
+     * @param number the number kept for the cell
+     */
+    private void check(Mat img, int number) {
+        if (mChecked && mClassifier.getNumber(img) != number) {
+            mMismatches++;
+        }
+    }
+
+    /**
+     * Grows the buffers so that the given number of images can be classified at once
+     *
+     * @param nbImages the number of images to classify
+     */
+    private void ensureCapacity(int nbImages) {
+        if (mSignatures.length >= nbImages) {
+            return;
+        }
+        CellSignature[] signatures = new CellSignature[nbImages];
+        System.arraycopy(mSignatures, 0, signatures, 0, mSignatures.length);
+        for (int i = mSignatures.length; i < nbImages; i++) {
+            signatures[i] = new CellSignature(SIGNATURE_SIZE * SIGNATURE_SIZE);
+        }
+        mSignatures = signatures;
+        mMissedIndices = new int[nbImages];
+        Mat[][] missedImages = new Mat[nbImages + 1][];
+        int[][] missedNumbers = new int[nbImages + 1][];
+        System.arraycopy(mMissedImages, 0, missedImages, 0, mMissedImages.length);
+        System.arraycopy(mMissedNumbers, 0, missedNumbers, 0, mMissedNumbers.length);
+        mMissedImages = missedImages;
+        mMissedNumbers = missedNumbers;
+    }
+
+    /**
+     * The bits of the reduced cell, used as the key of the cache
+     */
+    private static class CellSignature {
+
+        private final long[] mBits;
+        private int mHash = 0;
+
+        /**
+         * Constructor
+         *
+         * @param nbBits the number of pixels of the reduced cell
+         */
+        CellSignature(int nbBits) {
+            mBits = new long[(nbBits + 63) / 64];
+        }
+
+        /**
+         * Clears all the bits
+         */
+        void reset() {
+            Arrays.fill(mBits, 0);
+        }
+
+        /**
+         * Sets the bit of the given pixel
+         *
+         * @param pixel the index of the pixel in the reduced cell
+         */
+        void set(int pixel) {
+            mBits[pixel >> 6] |= 1L << pixel;
+        }
+
+        /**
+         * Computes the hash once all the bits are set
+         */
+        void updateHash() {
+            mHash = Arrays.hashCode(mBits);
+        }
+
+        /**
+         * Counts the bits that differ from the given signature
+         *
+         * @param other the signature to compare to
+         * @return the number of pixels of the reduced cells that differ
+         */
+        int distance(CellSignature other) {
+            int distance = 0;
+            for (int i = 0; i < mBits.length; i++) {
+                distance += Long.bitCount(mBits[i] ^ other.mBits[i]);
+            }
+            return distance;
+        }
+
+        /**
+         * Copies the signature, to keep it in the cache while the original is reused
+         *
+         * @return the copy
+         */
+        CellSignature copy() {
+            CellSignature copy = new CellSignature(mBits.length * 64);
+            System.arraycopy(mBits, 0, copy.mBits, 0, mBits.length);
+            copy.mHash = mHash;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CellSignature)) {
+                return false;
+            }
+            CellSignature other = (CellSignature) o;
+            return mHash == other.mHash && Arrays.equals(mBits, other.mBits);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.borisbordeaux.arsudokusolver.classifier;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.dnn.Dnn;
+
+public class DnnConfig {
+
+    /**
+     * The models available in the assets, they are all exported
+     * from the same trained network by the python script
+     */
+    public enum Model {
+        //weights stored as 32 bits floats
+        FLOAT32("frozen_graph.pb"),
+        //weights stored as 16 bits floats, half the size to read
+        FLOAT16("frozen_graph_fp16.pb");
+
+        private final String mAsset;
+
+        Model(String asset) {
+            mAsset = asset;
+        }
+
+        /**
+         * Getter for the name of the model in the assets
+         *
+         * @return the name of the asset
+         */
+        public String getAsset() {
+            return mAsset;
+        }
+    }
+
+    //the config used when nothing is specified, float model on the cpu
+    public static final DnnConfig DEFAULT = new DnnConfig(Model.FLOAT32, Dnn.DNN_BACKEND_DEFAULT, Dnn.DNN_TARGET_CPU);
+
+    private final Model mModel;
+    private final int mBackend;
+    private final int mTarget;
+
+    /**
+     * Constructor
+     *
+     * @param model   the model to load
+     * @param backend the dnn backend, one of Dnn.DNN_BACKEND_*
+     * @param target  the dnn target, one of Dnn.DNN_TARGET_*
+     */
+    public DnnConfig(@NotNull Model model, int backend, int target) {
+        mModel = model;
+        mBackend = backend;
+        mTarget = target;
+    }
+
+    /**
+     * Getter for the model
+     *
+     * @return the model to load
+     */
+    public Model getModel() {
+        return mModel;
+    }
+
+    /**
+     * Getter for the backend
+     *
+     * @return the dnn backend, one of Dnn.DNN_BACKEND_*
+     */
+    public int getBackend() {
+        return mBackend;
+    }
+
+    /**
+     * Getter for the target
+     *
+     * @return the dnn target, one of Dnn.DNN_TARGET_*
+     */
+    public int getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return a readable description of the config
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return mModel + " backend=" + mBackend + " target=" + mTarget;
+    }
+}
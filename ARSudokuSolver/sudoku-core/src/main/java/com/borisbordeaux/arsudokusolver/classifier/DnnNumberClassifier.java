@@ -0,0 +1,139 @@
+package com.borisbordeaux.arsudokusolver.classifier;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.Size;
+import org.opencv.dnn.Dnn;
+import org.opencv.dnn.Net;
+import org.opencv.imgproc.Imgproc;
+
+public class DnnNumberClassifier implements INumberClassifier {
+
+    //the pixels of a cell above this value are white in the input of the net, the others black
+    public static final double BINARY_THRESHOLD = 10;
+
+    //the model to load and where to run it
+    protected final DnnConfig mConfig;
+
+    private final Size size = new Size(28, 28);
+
+    //opencv dnn net, may be loaded by another thread
+    private volatile Net net = null;
+
+    /**
+     * Constructor, needs to call load model to use
+     *
+     * @param config the model to load and the dnn backend and target to use
+     */
+    public DnnNumberClassifier(@NotNull DnnConfig config) {
+        this.mConfig = config;
+    }
+
+    /**
+     * Getter for the config
+     *
+     * @return the model loaded and the dnn backend and target used
+     */
+    public DnnConfig getConfig() {
+        return mConfig;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @param img the image that has to be classified
+     * @return the number detected in the image or 0 if the net was not loaded
+     */
+    @Override
+    public int getNumber(Mat img) {
+        if (net != null) {
+            Mat resized = new Mat();
+
+            //resize the image to a 28x28x1 Mat, unless it is already at the input size of the net
+            if (img.cols() == size.width && img.rows() == size.height) {
+                Imgproc.threshold(img, resized, BINARY_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+            } else {
+                Imgproc.resize(img, resized, size);
+                Imgproc.threshold(resized, resized, BINARY_THRESHOLD, 255, Imgproc.THRESH_BINARY);
+            }
+
+            //convert to a float image
+            resized.convertTo(resized, CvType.CV_32F, 1.0 / 255.0, 0);
+
+            Mat blob = Dnn.blobFromImage(resized);
+            net.setInput(blob);
+            Mat result = net.forward();
+
+            //reshape the resulting blob to get a Mat with 10 elements
+            result.reshape(10);
+
+            int res = softMax(result);
+
+            //free the memory
+            blob.release();
+            result.release();
+            resized.release();
+
+            return res;
+        } else {
+            return 0;
+        }
+    }
+
+    /**
+     * Runs one inference on an empty image so that the dnn backend
+     * is initialized before the first real classification
+     */
+    public void warmUp() {
+        Mat empty = Mat.zeros(size, CvType.CV_8UC1);
+        getNumber(empty);
+        empty.release();
+    }
+
+    /**
+     * Builds the net from the given bytes of a tensorflow frozen graph, without any copy on disk
+     *
+     * @param model the bytes of the model
+     * @return true if the net was built correctly, false otherwise
+     */
+    public boolean loadModel(@NotNull byte[] model) {
+        MatOfByte buffer = new MatOfByte(model);
+        Net loadedNet = Dnn.readNetFromTensorflow(buffer);
+        buffer.release();
+
+        //unavailable backends and targets fall back to the cpu
+        loadedNet.setPreferableBackend(mConfig.getBackend());
+        loadedNet.setPreferableTarget(mConfig.getTarget());
+
+        net = loadedNet;
+        return !loadedNet.empty();
+    }
+
+    /**
+     * Does a softmax on the given Mat containing the results of the neural network
+     *
+     * @param result the Mat containing inference results
+     * @return the index where the value is the higher in the data array
+     */
+    private int softMax(Mat result) {
+        float[] data = new float[10];
+        result.get(0, 0, data);
+
+        int val = 0;
+        float max = data[0];
+        for (int i = 1; i < 10; i++) {
+            if (data[i] > max) {
+                val = i;
+                max = data[i];
+            }
+        }
+
+        //if confidence is less than 99%, set to 0
+        //avoid unsure and false values
+        if (max < 0.99) val = 0;
+
+        return val;
+    }
+}
@@ -0,0 +1,39 @@
+package com.borisbordeaux.arsudokusolver.classifier;
+
+import org.opencv.core.Mat;
+
+public interface INumberClassifier {
+
+    /**
+     * Classifies the given image and return the number detected
+     *
+     * @param img the image that has to be classified
+     * @return the number detected in the image
+     */
+    int getNumber(Mat img);
+
+    /**
+     * Classifies each of the given images and fills the given array with the numbers detected,
+     * the default implementation classifies the images one after the other
+     *
+     * @param imgs    the images that have to be classified
+     * @param numbers the array that will be filled, numbers[i] is the number detected in imgs[i]
+     */
+    default void getNumbers(Mat[] imgs, int[] numbers) {
+        for (int i = 0; i < imgs.length; i++) {
+            numbers[i] = getNumber(imgs[i]);
+        }
+    }
+
+    /**
+     * Getter for the number of images the last classification really classified, the others were
+     * answered without classifying them (e.g. from a cache) and cost almost nothing.
+     * The default implementation classifies all the images it is given
+     *
+     * @param nbImages the number of images given to the last classification
+     * @return the number of images classified by the last classification
+     */
+    default int getLastClassifiedCount(int nbImages) {
+        return nbImages;
+    }
+}
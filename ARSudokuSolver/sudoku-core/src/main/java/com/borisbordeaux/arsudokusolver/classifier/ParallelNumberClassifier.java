@@ -0,0 +1,146 @@
+package com.borisbordeaux.arsudokusolver.classifier;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParallelNumberClassifier implements INumberClassifier {
+
+    //the classifiers that are not used by a worker
+    //a classifier is used by only one thread at a time
+    //since an opencv dnn net is not thread safe
+    private final BlockingQueue<INumberClassifier> mIdleClassifiers;
+
+    //the workers classifying the images
+    private final ExecutorService mExecutor;
+
+    //the number of workers
+    private final int mPoolSize;
+
+    /**
+     * Constructor, creates one worker for each given classifier.
+     * Each classifier must own its resources (e.g. its own dnn net)
+     * because the classifiers are used concurrently
+     *
+     * @param classifiers the classifiers to use, one per worker
+     */
+    public ParallelNumberClassifier(@NotNull List<? extends INumberClassifier> classifiers) {
+        if (classifiers.isEmpty()) {
+            throw new IllegalArgumentException("At least one classifier is required");
+        }
+        mPoolSize = classifiers.size();
+        mIdleClassifiers = new ArrayBlockingQueue<>(mPoolSize, false, classifiers);
+        mExecutor = Executors.newFixedThreadPool(mPoolSize, r -> {
+            Thread t = new Thread(r, "NumberClassifier");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     * Uses the first classifier available
+     *
+     * @param img the image that has to be classified
+     * @return the number detected in the image
+     * @throws CancellationException if the thread was interrupted while waiting for a classifier
+     */
+    @Override
+    public int getNumber(Mat img) {
+        INumberClassifier classifier;
+        try {
+            classifier = mIdleClassifiers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for a classifier");
+        }
+
+        try {
+            return classifier.getNumber(img);
+        } finally {
+            mIdleClassifiers.add(classifier);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * The images are shared between all the workers, each worker takes
+     * the next image not classified yet until all images are classified
+     *
+     * @param imgs    the images that have to be classified
+     * @param numbers the array that will be filled, numbers[i] is the number detected in imgs[i]
+     * @throws CancellationException if the thread was interrupted, the images left are not classified
+     * @throws IllegalStateException if a classifier failed, the numbers are not all filled
+     */
+    @Override
+    public void getNumbers(Mat[] imgs, int[] numbers) {
+        AtomicInteger nextImage = new AtomicInteger(0);
+
+        //do not start more workers than images
+        int nbWorkers = Math.min(mPoolSize, imgs.length);
+        List<Future<?>> tasks = new ArrayList<>(nbWorkers);
+
+        for (int w = 0; w < nbWorkers; w++) {
+            tasks.add(mExecutor.submit(() -> {
+                INumberClassifier classifier = mIdleClassifiers.take();
+                try {
+                    int i;
+                    while ((i = nextImage.getAndIncrement()) < imgs.length) {
+                        numbers[i] = classifier.getNumber(imgs[i]);
+                    }
+                } finally {
+                    mIdleClassifiers.add(classifier);
+                }
+                return null;
+            }));
+        }
+
+        //wait for all workers, results are merged in place
+        //since each worker writes its own indices of the array
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                //the workers do not take any other image, the numbers are not valid
+                cancel(tasks, nextImage, imgs.length);
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while classifying the images");
+            } catch (ExecutionException e) {
+                cancel(tasks, nextImage, imgs.length);
+                throw new IllegalStateException("A classifier failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Stops the workers of a classification that will not be used, an image being
+     * classified is finished but no other image is taken by the workers
+     *
+     * @param tasks     the tasks of the workers
+     * @param nextImage the index of the next image to classify, shared by the workers
+     * @param nbImages  the number of images of the classification
+     */
+    private void cancel(List<Future<?>> tasks, AtomicInteger nextImage, int nbImages) {
+        nextImage.set(nbImages);
+        for (Future<?> task : tasks) {
+            task.cancel(true);
+        }
+    }
+
+    /**
+     * Stops the workers, the classifier must not be used after this call
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+    }
+}
@@ -115,6 +115,25 @@ public class Sudoku {
         }
     }
 
+    /**
+     * Restores a sudoku solved earlier, without solving it again
+     *
+     * @param values   the 81 values read in the grid, 0 for the empty cells
+     * @param solution the 81 values of the solved sudoku
+     */
+    public void restore(@NotNull int[] values, @NotNull int[] solution) {
+        if (values.length == 81 && solution.length == 81) {
+            reset();
+            for (int i = 0; i < 81; i++) {
+                if (values[i] != 0) {
+                    setInitValue(i, values[i]);
+                } else {
+                    setValue(i, solution[i]);
+                }
+            }
+        }
+    }
+
     /**
      * Solves the sudoku for one pass
      */
@@ -0,0 +1,74 @@
+package com.borisbordeaux.arsudokusolver.utils.image;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BufferPool {
+
+    //the Mats owned by the pool, released all at once
+    private final List<Mat> mBuffers = new ArrayList<>();
+
+    //the address of the data of each buffer at the end of the last frame
+    private long[] mAddresses = new long[0];
+
+    private int mLastFrameAllocations = 0;
+
+    /**
+     * Gives the ownership of the given Mat to the pool, it will be
+     * watched for reallocations and released with the pool
+     *
+     * @param mat the Mat reused between frames
+     * @param <T> the type of the Mat
+     * @return the given Mat
+     */
+    public <T extends Mat> T register(@NotNull T mat) {
+        mBuffers.add(mat);
+        return mat;
+    }
+
+    /**
+     * Counts the buffers whose data has been allocated since the last call.
+     * It must be called once at the end of each frame
+     */
+    public void frameEnded() {
+        if (mAddresses.length != mBuffers.size()) {
+            long[] addresses = new long[mBuffers.size()];
+            System.arraycopy(mAddresses, 0, addresses, 0, Math.min(mAddresses.length, addresses.length));
+            mAddresses = addresses;
+        }
+
+        int allocations = 0;
+        for (int i = 0; i < mBuffers.size(); i++) {
+            long address = mBuffers.get(i).dataAddr();
+            if (address != 0 && address != mAddresses[i]) {
+                allocations++;
+            }
+            mAddresses[i] = address;
+        }
+
+        mLastFrameAllocations = allocations;
+    }
+
+    /**
+     * Getter for the number of buffers allocated during the last frame,
+     * it is 0 in the steady state
+     *
+     * @return the number of allocations during the last frame
+     */
+    public int getLastFrameAllocations() {
+        return mLastFrameAllocations;
+    }
+
+    /**
+     * Frees the memory of all the buffers of the pool
+     */
+    public void release() {
+        for (Mat mat : mBuffers) {
+            mat.release();
+        }
+        mAddresses = new long[mBuffers.size()];
+    }
+}
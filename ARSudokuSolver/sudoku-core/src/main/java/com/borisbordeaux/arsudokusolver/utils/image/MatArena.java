@@ -0,0 +1,102 @@
+package com.borisbordeaux.arsudokusolver.utils.image;
+
+import org.jetbrains.annotations.NotNull;
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scope owning the temporary Mats of a computation, such as submats and
+ * headers on external memory. All of them are released when the arena is
+ * closed, which allows to use it in a try-with-resources block:
+ * <pre>
+ * try (MatArena arena = mArena.begin()) {
+ *     Mat cell = arena.add(img.submat(rect));
+ *     ...
+ * }
+ * </pre>
+ * An arena is reusable, its list of Mats is kept between two scopes
+ */
+public class MatArena implements AutoCloseable {
+
+    //number of Mats added to an arena and not released yet, counted only in debug mode
+    private static final AtomicInteger sLiveMats = new AtomicInteger();
+    private static volatile boolean sDebug = false;
+
+    private final List<Mat> mMats = new ArrayList<>();
+
+    /**
+     * Enables or disables the count of the live Mats of all arenas
+     *
+     * @param debug true to count the live Mats
+     */
+    public static void setDebug(boolean debug) {
+        sDebug = debug;
+        sLiveMats.set(0);
+    }
+
+    /**
+     * Getter for the number of Mats added to an arena and not released yet.
+     * Outside of any scope it should be 0, otherwise some Mats are leaking
+     *
+     * @return the number of live Mats, always 0 if the debug mode is disabled
+     */
+    public static int getLiveMats() {
+        return sLiveMats.get();
+    }
+
+    /**
+     * Starts a new scope
+     *
+     * @return this arena
+     */
+    public MatArena begin() {
+        if (!mMats.isEmpty()) {
+            throw new IllegalStateException("The previous scope of the arena was not closed");
+        }
+        return this;
+    }
+
+    /**
+     * Gives the ownership of the given Mat to the arena, it
+     * will be released when the arena is closed
+     *
+     * @param mat the temporary Mat
+     * @param <T> the type of the Mat
+     * @return the given Mat
+     */
+    public <T extends Mat> T add(@NotNull T mat) {
+        mMats.add(mat);
+        if (sDebug) {
+            sLiveMats.incrementAndGet();
+        }
+        return mat;
+    }
+
+    /**
+     * Gives the ownership of all the given Mats to the arena
+     *
+     * @param mats the temporary Mats
+     */
+    public void addAll(@NotNull List<? extends Mat> mats) {
+        for (Mat mat : mats) {
+            add(mat);
+        }
+    }
+
+    /**
+     * Releases all the Mats of the scope
+     */
+    @Override
+    public void close() {
+        for (Mat mat : mMats) {
+            mat.release();
+        }
+        if (sDebug) {
+            sLiveMats.addAndGet(-mMats.size());
+        }
+        mMats.clear();
+    }
+}
@@ -0,0 +1,180 @@
+package com.borisbordeaux.arsudokusolver.utils.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Adapts the work done on each frame to the speed of the device, from the time the previous frames took.
+ * When the frames are too slow the images are processed smaller, the full detection of the grid is done
+ * less often, and at the smallest size some frames are skipped. When the frames are fast enough the
+ * frames are no more skipped then the images are processed bigger, to read the digits with more detail
+ */
+public class ProcessingGovernor {
+
+    //weight of the last frame in the estimated time of a frame
+    private final double LATENCY_SMOOTHING = 0.2;
+
+    //under this part of the budget, the frames are fast enough to do more work
+    private final double FAST_RATIO = 0.6;
+
+    //number of frames measured after a change before the next one, the first ones are often slower
+    private final int COOLDOWN_FRAMES = 15;
+
+    //at most one frame processed every MAX_SKIP_INTERVAL frames
+    private final int MAX_SKIP_INTERVAL = 3;
+
+    //at most one full detection every MAX_DETECTION_INTERVAL frames
+    private final int MAX_DETECTION_INTERVAL = 3;
+
+    //the time a frame should take to hold the target frame rate
+    private final double mFrameBudgetNs;
+
+    //the processing sizes, ascending, and the one used before any measure
+    private final int[] mSizes;
+    private final int mInitialIndex;
+    private int mSizeIndex;
+
+    //the index of the biggest size not above the size of the frames
+    private int mMaxIndex;
+
+    //one frame processed every mSkipInterval frames
+    private int mSkipInterval = 1;
+    private long mFrameCount = 0;
+
+    //estimated time of a processed frame, negative until a frame is measured
+    private double mLatencyNs = -1;
+    private int mCooldown = COOLDOWN_FRAMES;
+
+    /**
+     * Constructor
+     *
+     * @param targetFps    the frame rate to hold
+     * @param sizes        the sizes in pixels at which the images can be processed, ascending
+     * @param initialIndex the index of the size used until the frames are measured
+     */
+    public ProcessingGovernor(double targetFps, @NotNull int[] sizes, int initialIndex) {
+        if (sizes.length == 0 || initialIndex < 0 || initialIndex >= sizes.length) {
+            throw new IllegalArgumentException("The initial size must be one of the sizes");
+        }
+        mFrameBudgetNs = 1e9 / targetFps;
+        mSizes = sizes.clone();
+        mInitialIndex = initialIndex;
+        mSizeIndex = initialIndex;
+        mMaxIndex = sizes.length - 1;
+    }
+
+    /**
+     * Limits the processing size to the size of the frames, so that the images are never upscaled.
+     * The smallest size stays usable whatever the size of the frames
+     *
+     * @param frameSize the smallest side of the frames in pixels
+     */
+    public void setMaxSize(int frameSize) {
+        int maxIndex = 0;
+        while (maxIndex < mSizes.length - 1 && mSizes[maxIndex + 1] <= frameSize) {
+            maxIndex++;
+        }
+        mMaxIndex = maxIndex;
+        if (mSizeIndex > mMaxIndex) {
+            changeSize(mMaxIndex);
+        }
+    }
+
+    /**
+     * Indicates whether the next frame has to be processed or skipped,
+     * must be called once for each frame received
+     *
+     * @return true if the frame has to be processed, false if it has to be skipped
+     */
+    public boolean shouldProcess() {
+        return mFrameCount++ % mSkipInterval == 0;
+    }
+
+    /**
+     * Refines the estimated time of a frame with a frame that was processed,
+     * then adapts the processing size and the skipped frames
+     *
+     * @param elapsedNs the time of the processing in nanoseconds
+     */
+    public void frameProcessed(long elapsedNs) {
+        if (mLatencyNs < 0) {
+            mLatencyNs = elapsedNs;
+        } else {
+            mLatencyNs += LATENCY_SMOOTHING * (elapsedNs - mLatencyNs);
+        }
+
+        if (mCooldown > 0) {
+            mCooldown--;
+            return;
+        }
+
+        //the skipped frames give more time to the processed ones
+        double budgetNs = mFrameBudgetNs * mSkipInterval;
+        if (mLatencyNs > budgetNs) {
+            if (mSizeIndex > 0) {
+                changeSize(mSizeIndex - 1);
+            } else if (mSkipInterval < MAX_SKIP_INTERVAL) {
+                mSkipInterval++;
+                mCooldown = COOLDOWN_FRAMES;
+            }
+        } else if (mLatencyNs < FAST_RATIO * mFrameBudgetNs) {
+            if (mSkipInterval > 1) {
+                mSkipInterval--;
+                mCooldown = COOLDOWN_FRAMES;
+            } else if (mSizeIndex < mMaxIndex) {
+                changeSize(mSizeIndex + 1);
+            }
+        }
+    }
+
+    /**
+     * Getter for the size at which the images have to be processed
+     *
+     * @return the width and height in pixels of the square processed image
+     */
+    public int getProcessingSize() {
+        return mSizes[mSizeIndex];
+    }
+
+    /**
+     * Getter for the number of frames between two processed frames
+     *
+     * @return 1 if all the frames are processed, n if one frame out of n is processed
+     */
+    public int getSkipInterval() {
+        return mSkipInterval;
+    }
+
+    /**
+     * Getter for the number of frames between two full detections of the grid, it grows
+     * as the images get smaller than the initial size, or than the frames if they are smaller,
+     * and so as the device is slow
+     *
+     * @return 1 to search the grid in each frame, n to search it in one frame out of n
+     */
+    public int getDetectionInterval() {
+        int referenceIndex = Math.min(mInitialIndex, mMaxIndex);
+        return Math.min(MAX_DETECTION_INTERVAL, 1 + Math.max(0, referenceIndex - mSizeIndex));
+    }
+
+    /**
+     * Getter for the estimated time of a processed frame
+     *
+     * @return the time in milliseconds, 0 if no frame was measured
+     */
+    public double getLatencyMs() {
+        return Math.max(0, mLatencyNs) / 1e6;
+    }
+
+    /**
+     * Changes the processing size, the time of a frame at the new size is not known yet
+     *
+     * @param index the index of the new size
+     */
+    private void changeSize(int index) {
+        //the time scales roughly with the number of pixels
+        double ratio = (double) mSizes[index] / mSizes[mSizeIndex];
+        mLatencyNs *= ratio * ratio;
+        mSizeIndex = index;
+        mCooldown = COOLDOWN_FRAMES;
+    }
+}
@@ -0,0 +1,96 @@
+package com.borisbordeaux.arsudokusolver.utils.perf;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class StageTimer {
+
+    //total time in nanoseconds and number of runs of each stage, in the order of their first run
+    private final Map<String, long[]> mStages = new LinkedHashMap<>();
+
+    //the stage running, stages are not nested
+    private String mStage = null;
+    private long mStart = 0;
+
+    /**
+     * Starts measuring the given stage, the previous one must have been stopped
+     *
+     * @param stage the name of the stage
+     */
+    public void start(@NotNull String stage) {
+        mStage = stage;
+        mStart = System.nanoTime();
+    }
+
+    /**
+     * Stops measuring the running stage and adds its time to the total of the stage
+     */
+    public void stop() {
+        if (mStage == null) {
+            return;
+        }
+
+        long elapsed = System.nanoTime() - mStart;
+        long[] stage = mStages.get(mStage);
+        if (stage == null) {
+            stage = new long[2];
+            mStages.put(mStage, stage);
+        }
+        stage[0] += elapsed;
+        stage[1]++;
+        mStage = null;
+    }
+
+    /**
+     * Getter for the names of the stages measured
+     *
+     * @return the names of the stages, in the order of their first run
+     */
+    public Set<String> getStages() {
+        return mStages.keySet();
+    }
+
+    /**
+     * Getter for the number of runs of the given stage
+     *
+     * @param stage the name of the stage
+     * @return the number of times the stage was measured
+     */
+    public long getRuns(@NotNull String stage) {
+        long[] values = mStages.get(stage);
+        return values == null ? 0 : values[1];
+    }
+
+    /**
+     * Getter for the total time of the given stage
+     *
+     * @param stage the name of the stage
+     * @return the sum of the times of all runs in milliseconds
+     */
+    public double getTotalMs(@NotNull String stage) {
+        long[] values = mStages.get(stage);
+        return values == null ? 0 : values[0] / 1e6;
+    }
+
+    /**
+     * Getter for the mean time of the given stage
+     *
+     * @param stage the name of the stage
+     * @return the mean time of a run in milliseconds, 0 if the stage never ran
+     */
+    public double getMeanMs(@NotNull String stage) {
+        long runs = getRuns(stage);
+        return runs == 0 ? 0 : getTotalMs(stage) / runs;
+    }
+
+    /**
+     * Forgets all the measures
+     */
+    public void reset() {
+        mStages.clear();
+        mStage = null;
+    }
+}
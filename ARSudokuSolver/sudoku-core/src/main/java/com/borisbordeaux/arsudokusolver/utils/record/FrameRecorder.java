@@ -0,0 +1,179 @@
+package com.borisbordeaux.arsudokusolver.utils.record;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Appends the luminance planes of the analyzed frames to a file, see {@link FrameReplayReader}.
+ * The file starts with a header (magic number and version), then each frame is written as its
+ * timestamp in nanoseconds, its width and its height followed by its pixels, row by row without
+ * padding. The frames are copied in recycled buffers and written by a background thread, a frame
+ * is dropped when all buffers are waiting to be written so that the analysis is never blocked
+ */
+public class FrameRecorder implements Closeable {
+
+    //"ARSF" for AR Sudoku Frames
+    public static final int MAGIC = 0x41525346;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int FRAME_HEADER_SIZE = 16;
+
+    private final FileChannel mChannel;
+    private final ExecutorService mWriter;
+
+    //buffers ready to receive a frame
+    private final BlockingQueue<ByteBuffer> mFreeBuffers;
+
+    private final AtomicInteger mRecordedFrames = new AtomicInteger();
+    private final AtomicInteger mDroppedFrames = new AtomicInteger();
+    private volatile boolean mClosed = false;
+
+    /**
+     * Constructor, creates the file and writes its header
+     *
+     * @param file        the file to create, it is replaced if it exists
+     * @param nbBuffers   the maximum number of frames waiting to be written
+     * @throws IOException if the file cannot be created
+     */
+    public FrameRecorder(@NotNull File file, int nbBuffers) throws IOException {
+        mChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(header);
+
+        mFreeBuffers = new ArrayBlockingQueue<>(nbBuffers);
+        for (int i = 0; i < nbBuffers; i++) {
+            mFreeBuffers.add(ByteBuffer.allocateDirect(0));
+        }
+
+        mWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "FrameRecorder");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Copies the given luminance plane and queues it to be written
+     *
+     * @param plane       the buffer of the luminance plane, its position is not modified
+     * @param rowStride   the number of bytes between the start of two rows in the plane
+     * @param width       the width of the frame
+     * @param height      the height of the frame
+     * @param timestampNs the timestamp of the frame in nanoseconds
+     * @return true if the frame will be written, false if it was dropped
+     */
+    public boolean record(@NotNull ByteBuffer plane, int rowStride, int width, int height, long timestampNs) {
+        ByteBuffer buffer = mFreeBuffers.poll();
+        if (mClosed || buffer == null) {
+            if (buffer != null) {
+                mFreeBuffers.add(buffer);
+            }
+            mDroppedFrames.incrementAndGet();
+            return false;
+        }
+
+        //a buffer is reallocated only when the size of the frames changes
+        int size = FRAME_HEADER_SIZE + width * height;
+        if (buffer.capacity() != size) {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        buffer.clear();
+        buffer.putLong(timestampNs).putInt(width).putInt(height);
+        ByteBuffer rows = plane.duplicate();
+        for (int row = 0; row < height; row++) {
+            rows.limit(row * rowStride + width).position(row * rowStride);
+            buffer.put(rows);
+        }
+        buffer.flip();
+
+        ByteBuffer frame = buffer;
+        try {
+            mWriter.execute(() -> write(frame));
+        } catch (RejectedExecutionException e) {
+            //closed while the frame was copied
+            mFreeBuffers.add(frame);
+            mDroppedFrames.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the number of frames written or waiting to be written
+     *
+     * @return the number of frames recorded
+     */
+    public int getRecordedFrames() {
+        return mRecordedFrames.get();
+    }
+
+    /**
+     * Getter for the number of frames dropped because the writer was late
+     *
+     * @return the number of frames dropped
+     */
+    public int getDroppedFrames() {
+        return mDroppedFrames.get();
+    }
+
+    /**
+     * Writes the frames waiting and closes the file, the next frames are dropped
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        mClosed = true;
+        mWriter.shutdown();
+        try {
+            mWriter.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mChannel.close();
+    }
+
+    /**
+     * Appends the given frame to the file, then gives the buffer back
+     *
+     * @param frame the buffer containing the frame
+     */
+    private void write(ByteBuffer frame) {
+        try {
+            writeFully(frame);
+            mRecordedFrames.incrementAndGet();
+        } catch (IOException e) {
+            e.printStackTrace();
+            mDroppedFrames.incrementAndGet();
+        }
+        mFreeBuffers.add(frame);
+    }
+
+    /**
+     * Writes all the remaining bytes of the given buffer at the end of the file
+     *
+     * @param buffer the bytes to write
+     * @throws IOException if the bytes cannot be written
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.borisbordeaux.arsudokusolver.utils.record;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the frames written by a {@link FrameRecorder}. The file is mapped in memory,
+ * so the luminance of a frame is a view on the file and nothing is copied
+ */
+public class FrameReplayReader implements Closeable {
+
+    private final FileChannel mChannel;
+    private final MappedByteBuffer mFile;
+
+    //the frame read by the last call to next
+    private long mTimestamp = 0;
+    private int mWidth = 0;
+    private int mHeight = 0;
+    private ByteBuffer mLuminance = null;
+
+    /**
+     * Constructor, maps the file and checks its header
+     *
+     * @param file the file written by a recorder
+     * @throws IOException if the file cannot be mapped or is not a recording
+     */
+    public FrameReplayReader(@NotNull File file) throws IOException {
+        mChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        if (mChannel.size() > Integer.MAX_VALUE) {
+            mChannel.close();
+            throw new IOException(file + ": recordings bigger than 2 GB are not supported");
+        }
+        mFile = mChannel.map(FileChannel.MapMode.READ_ONLY, 0, mChannel.size());
+
+        if (mFile.remaining() < FrameRecorder.HEADER_SIZE || mFile.getInt() != FrameRecorder.MAGIC || mFile.getInt() != FrameRecorder.VERSION) {
+            mChannel.close();
+            throw new IOException(file + ": not a frame recording");
+        }
+    }
+
+    /**
+     * Reads the next frame, a frame partially written at the end of the file is ignored
+     *
+     * @return true if a frame was read, false at the end of the recording
+     */
+    public boolean next() {
+        if (mFile.remaining() < FrameRecorder.FRAME_HEADER_SIZE) {
+            return false;
+        }
+
+        int start = mFile.position();
+        long timestamp = mFile.getLong();
+        int width = mFile.getInt();
+        int height = mFile.getInt();
+        if (width <= 0 || height <= 0 || mFile.remaining() < width * height) {
+            mFile.position(start);
+            return false;
+        }
+
+        mTimestamp = timestamp;
+        mWidth = width;
+        mHeight = height;
+
+        //a view on the pixels of the frame in the mapped file
+        mLuminance = mFile.slice();
+        mLuminance.limit(width * height);
+        mFile.position(mFile.position() + width * height);
+        return true;
+    }
+
+    /**
+     * Goes back to the first frame
+     */
+    public void rewind() {
+        mFile.position(FrameRecorder.HEADER_SIZE);
+        mLuminance = null;
+    }
+
+    /**
+     * Getter for the timestamp of the current frame
+     *
+     * @return the timestamp in nanoseconds
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    /**
+     * Getter for the width of the current frame
+     *
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * Getter for the height of the current frame
+     *
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Getter for the luminance of the current frame, a direct buffer
+     * that can be wrapped in a Mat without copy
+     *
+     * @return the pixels of the current frame row by row, null before the first frame
+     */
+    public ByteBuffer getLuminance() {
+        return mLuminance;
+    }
+
+    /**
+     * Closes the file, the buffers given by the reader must not be used after this call
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
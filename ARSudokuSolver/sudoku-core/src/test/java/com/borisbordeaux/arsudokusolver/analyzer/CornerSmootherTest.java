@@ -0,0 +1,66 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CornerSmootherTest {
+
+    private static float[] square(float offset) {
+        return new float[]{offset, offset, 100 + offset, offset, 100 + offset, 100 + offset, offset, 100 + offset};
+    }
+
+    @Test
+    public void firstUpdate() {
+        CornerSmoother smoother = new CornerSmoother(4, 0.2);
+        float[] corners = square(10);
+
+        //nothing to smooth with
+        smoother.update(corners);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(square(10)[i], corners[i], 1e-6);
+        }
+    }
+
+    @Test
+    public void jitterIsFiltered() {
+        CornerSmoother smoother = new CornerSmoother(4, 0.2);
+        smoother.update(square(10));
+
+        //a move of 1 pixel on each axis is partially followed
+        float[] corners = square(11);
+        smoother.update(corners);
+        for (int i = 0; i < 8; i++) {
+            float delta = corners[i] - square(10)[i];
+            assertTrue(delta > 0 && delta < 1);
+        }
+    }
+
+    @Test
+    public void moveIsFollowed() {
+        CornerSmoother smoother = new CornerSmoother(4, 0.2);
+        smoother.update(square(10));
+
+        //a move bigger than the jitter is fully followed
+        float[] corners = square(30);
+        smoother.update(corners);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(square(30)[i], corners[i], 1e-6);
+        }
+    }
+
+    @Test
+    public void reset() {
+        CornerSmoother smoother = new CornerSmoother(4, 0.2);
+        smoother.update(square(10));
+        smoother.reset();
+
+        //after a reset, the previous positions are forgotten
+        float[] corners = square(11);
+        smoother.update(corners);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(square(11)[i], corners[i], 1e-6);
+        }
+    }
+}
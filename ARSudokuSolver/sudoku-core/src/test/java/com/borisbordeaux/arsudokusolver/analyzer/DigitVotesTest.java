@@ -0,0 +1,71 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DigitVotesTest {
+
+    private static int[] grid(int value) {
+        int[] grid = new int[81];
+        for (int i = 0; i < 81; i++) {
+            grid[i] = (i + value) % 10;
+        }
+        return grid;
+    }
+
+    private static void addGrid(DigitVotes votes, int[] grid) {
+        for (int cell = 0; cell < 81; cell++) {
+            votes.add(cell, grid[cell]);
+        }
+    }
+
+    @Test
+    public void confidentAfterMinVotes() {
+        DigitVotes votes = new DigitVotes(3, 0.7);
+        addGrid(votes, grid(0));
+        addGrid(votes, grid(0));
+        assertFalse(votes.isConfident());
+
+        addGrid(votes, grid(0));
+        assertTrue(votes.isConfident());
+
+        int[] result = new int[81];
+        votes.getGrid(result);
+        for (int i = 0; i < 81; i++) {
+            assertEquals(grid(0)[i], result[i]);
+        }
+    }
+
+    @Test
+    public void wrongReadIsOutvoted() {
+        DigitVotes votes = new DigitVotes(3, 0.7);
+        for (int i = 0; i < 3; i++) {
+            addGrid(votes, grid(0));
+        }
+
+        //one blurry frame read a wrong value in the first cell
+        votes.add(0, 8);
+        assertEquals(0, votes.getValue(0));
+        assertTrue(votes.isConfident(0));
+
+        //two wrong reads out of five are too many
+        votes.add(0, 8);
+        assertEquals(0, votes.getValue(0));
+        assertFalse(votes.isConfident(0));
+    }
+
+    @Test
+    public void reset() {
+        DigitVotes votes = new DigitVotes(1, 0.5);
+        addGrid(votes, grid(3));
+        assertTrue(votes.isConfident());
+
+        votes.reset();
+        assertFalse(votes.isConfident());
+        assertEquals(0, votes.getVotes(0));
+        assertEquals(0, votes.getValue(0));
+    }
+}
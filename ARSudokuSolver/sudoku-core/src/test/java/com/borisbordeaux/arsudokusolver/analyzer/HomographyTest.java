@@ -0,0 +1,59 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HomographyTest {
+
+    private static final double SIZE = 936;
+
+    //a grid seen in perspective
+    private static final float[] QUAD = {52, 40, 410, 71, 380, 430, 31, 395};
+
+    private static double[] apply(double[] h, double x, double y) {
+        double w = h[6] * x + h[7] * y + h[8];
+        return new double[]{(h[0] * x + h[1] * y + h[2]) / w, (h[3] * x + h[4] * y + h[5]) / w};
+    }
+
+    @Test
+    public void squareToQuad() {
+        double[] h = new double[9];
+        assertTrue(Homography.squareToQuad(SIZE, QUAD, h));
+
+        //the corners of the square are sent on the corners of the quadrilateral
+        double[][] square = {{0, 0}, {SIZE, 0}, {SIZE, SIZE}, {0, SIZE}};
+        for (int i = 0; i < 4; i++) {
+            double[] p = apply(h, square[i][0], square[i][1]);
+            assertEquals(QUAD[2 * i], p[0], 1e-6);
+            assertEquals(QUAD[2 * i + 1], p[1], 1e-6);
+        }
+    }
+
+    @Test
+    public void invert() {
+        double[] h = new double[9];
+        double[] inv = new double[9];
+        assertTrue(Homography.squareToQuad(SIZE, QUAD, h));
+        assertTrue(Homography.invert(h, inv));
+
+        //the corners of the quadrilateral are sent back on the corners of the square
+        double[][] square = {{0, 0}, {SIZE, 0}, {SIZE, SIZE}, {0, SIZE}};
+        for (int i = 0; i < 4; i++) {
+            double[] p = apply(inv, QUAD[2 * i], QUAD[2 * i + 1]);
+            assertEquals(square[i][0], p[0], 1e-6);
+            assertEquals(square[i][1], p[1], 1e-6);
+        }
+        assertEquals(1, inv[8], 0);
+    }
+
+    @Test
+    public void degenerated() {
+        double[] h = new double[9];
+
+        //all corners on the same line
+        assertFalse(Homography.squareToQuad(SIZE, new float[]{0, 0, 10, 10, 20, 20, 30, 30}, h));
+    }
+}
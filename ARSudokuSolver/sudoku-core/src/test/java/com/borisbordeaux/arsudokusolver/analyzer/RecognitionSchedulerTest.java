@@ -0,0 +1,61 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RecognitionSchedulerTest {
+
+    @Test
+    public void noBudgetSchedulesAllCells() {
+        RecognitionScheduler scheduler = new RecognitionScheduler(0, 1);
+        DigitVotes votes = new DigitVotes(1, 0);
+        int[] cells = new int[81];
+
+        assertEquals(81, scheduler.schedule(votes, cells));
+        for (int i = 0; i < 81; i++) {
+            assertEquals(i, cells[i]);
+        }
+    }
+
+    @Test
+    public void budgetLimitsCells() {
+        //10 cells of 1 ms fit in the budget
+        RecognitionScheduler scheduler = new RecognitionScheduler(10, 1);
+        DigitVotes votes = new DigitVotes(1, 0);
+        int[] cells = new int[81];
+        assertEquals(10, scheduler.schedule(votes, cells));
+
+        //the cells are twice slower than expected
+        for (int i = 0; i < 20; i++) {
+            scheduler.recordClassification(10, 20_000_000);
+        }
+        assertEquals(5, scheduler.schedule(votes, cells));
+
+        //a budget too small still reads one cell
+        scheduler.setBudget(0.5);
+        assertEquals(1, scheduler.schedule(votes, cells));
+    }
+
+    @Test
+    public void cellsNotReadFirst() {
+        RecognitionScheduler scheduler = new RecognitionScheduler(0, 1);
+        DigitVotes votes = new DigitVotes(2, 0.5);
+        int[] cells = new int[81];
+
+        //the first cells were read once, the last ones are confident
+        for (int cell = 0; cell < 40; cell++) {
+            votes.add(cell, 1);
+        }
+        for (int cell = 70; cell < 81; cell++) {
+            votes.add(cell, 1);
+            votes.add(cell, 1);
+        }
+
+        assertEquals(70, scheduler.schedule(votes, cells));
+        assertEquals(40, cells[0]);
+        assertEquals(69, cells[29]);
+        assertEquals(0, cells[30]);
+        assertEquals(39, cells[69]);
+    }
+}
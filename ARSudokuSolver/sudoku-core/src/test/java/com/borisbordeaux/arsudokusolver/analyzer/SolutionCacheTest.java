@@ -0,0 +1,70 @@
+package com.borisbordeaux.arsudokusolver.analyzer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class SolutionCacheTest {
+
+    //a fingerprint whose occupied cells are the given ones
+    private static GridFingerprint fingerprint(int... cells) {
+        boolean[] occupied = new boolean[81];
+        for (int cell : cells) {
+            occupied[cell] = true;
+        }
+        return new GridFingerprint(occupied);
+    }
+
+    private static int[] grid(int value) {
+        int[] grid = new int[81];
+        grid[0] = value;
+        return grid;
+    }
+
+    @Test
+    public void distance() {
+        GridFingerprint grid = fingerprint(0, 10, 70, 80);
+        assertEquals(4, grid.getOccupiedCells());
+        assertEquals(0, grid.distance(fingerprint(0, 10, 70, 80)));
+        assertEquals(2, grid.distance(fingerprint(0, 10, 70, 79)));
+        assertEquals(grid, fingerprint(80, 70, 10, 0));
+    }
+
+    @Test
+    public void findWithinTolerance() {
+        SolutionCache cache = new SolutionCache(4, 2);
+        cache.put(fingerprint(0, 1, 2, 3, 4), grid(1), grid(2));
+
+        //two cells read differently still match
+        SolutionCache.Solution solution = cache.find(fingerprint(0, 1, 2, 3, 5));
+        assertNotNull(solution);
+        assertEquals(1, solution.getValues()[0]);
+        assertEquals(2, solution.getSolution()[0]);
+
+        //three cells is another grid
+        assertNull(cache.find(fingerprint(0, 1, 2, 3, 4, 5, 6, 7)));
+
+        //the same grid solved again replaces the previous solution
+        cache.put(fingerprint(0, 1, 2, 3), grid(3), grid(4));
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.find(fingerprint(0, 1, 2, 3, 4)).getValues()[0]);
+    }
+
+    @Test
+    public void leastRecentlyUsedIsRemoved() {
+        SolutionCache cache = new SolutionCache(2, 0);
+        cache.put(fingerprint(1), grid(1), grid(1));
+        cache.put(fingerprint(2), grid(2), grid(2));
+
+        //the first grid is used, the second one is the least recently used
+        assertNotNull(cache.find(fingerprint(1)));
+        cache.put(fingerprint(3), grid(3), grid(3));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.find(fingerprint(1)));
+        assertNull(cache.find(fingerprint(2)));
+        assertNotNull(cache.find(fingerprint(3)));
+    }
+}
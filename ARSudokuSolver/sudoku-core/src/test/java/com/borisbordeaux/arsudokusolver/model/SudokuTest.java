@@ -1,5 +1,6 @@
 package com.borisbordeaux.arsudokusolver.model;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -86,4 +87,27 @@ public class SudokuTest {
         sudoku.solve(init);
         assertTrue(sudoku.isError());
     }
+
+    @Test
+    public void restore() {
+        Sudoku solved = new Sudoku();
+        int[] init = new int[81];
+        init[0] = 5;
+        init[40] = 3;
+        solved.solve(init);
+
+        int[] solution = new int[81];
+        for (int i = 0; i < 81; i++) {
+            solution[i] = solved.getValue(i);
+        }
+
+        //same values and init values without solving
+        Sudoku restored = new Sudoku();
+        restored.restore(init, solution);
+        assertTrue(restored.ended() && !restored.isError());
+        for (int i = 0; i < 81; i++) {
+            assertEquals(solution[i], restored.getValue(i));
+            assertEquals(init[i] != 0, restored.isInitValue(i));
+        }
+    }
 }
\ No newline at end of file
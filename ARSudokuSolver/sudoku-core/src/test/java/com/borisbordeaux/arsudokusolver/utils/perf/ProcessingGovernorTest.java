@@ -0,0 +1,84 @@
+package com.borisbordeaux.arsudokusolver.utils.perf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ProcessingGovernorTest {
+
+    private final int[] SIZES = {320, 400, 480, 560, 640};
+
+    @Test
+    public void slowFramesLowerTheSizeThenSkipFrames() {
+        ProcessingGovernor governor = new ProcessingGovernor(30, SIZES, 2);
+        assertEquals(480, governor.getProcessingSize());
+        assertEquals(1, governor.getDetectionInterval());
+
+        //100 ms frames are far too slow for 30 fps
+        for (int i = 0; i < 200; i++) {
+            governor.frameProcessed(100_000_000);
+        }
+        assertEquals(320, governor.getProcessingSize());
+        assertEquals(3, governor.getSkipInterval());
+        assertEquals(3, governor.getDetectionInterval());
+
+        //one frame out of 3 is processed
+        assertTrue(governor.shouldProcess());
+        assertFalse(governor.shouldProcess());
+        assertFalse(governor.shouldProcess());
+        assertTrue(governor.shouldProcess());
+    }
+
+    @Test
+    public void fastFramesStopSkippingThenRaiseTheSize() {
+        ProcessingGovernor governor = new ProcessingGovernor(30, SIZES, 2);
+        for (int i = 0; i < 200; i++) {
+            governor.frameProcessed(100_000_000);
+        }
+
+        //5 ms frames leave time for more detail
+        for (int i = 0; i < 200; i++) {
+            governor.frameProcessed(5_000_000);
+        }
+        assertEquals(1, governor.getSkipInterval());
+        assertEquals(640, governor.getProcessingSize());
+        assertEquals(1, governor.getDetectionInterval());
+    }
+
+    @Test
+    public void framesInBudgetKeepTheSize() {
+        ProcessingGovernor governor = new ProcessingGovernor(30, SIZES, 2);
+        for (int i = 0; i < 200; i++) {
+            governor.frameProcessed(25_000_000);
+        }
+        assertEquals(480, governor.getProcessingSize());
+        assertEquals(1, governor.getSkipInterval());
+    }
+
+    @Test
+    public void sizeLimitedToTheFrames() {
+        ProcessingGovernor governor = new ProcessingGovernor(30, SIZES, 2);
+
+        //frames of 400 pixels are not upscaled to 480
+        governor.setMaxSize(450);
+        assertEquals(400, governor.getProcessingSize());
+        assertEquals(1, governor.getDetectionInterval());
+
+        //fast frames do not raise the size above the frames
+        for (int i = 0; i < 200; i++) {
+            governor.frameProcessed(5_000_000);
+        }
+        assertEquals(400, governor.getProcessingSize());
+
+        //frames smaller than all the sizes still use the smallest one
+        governor.setMaxSize(200);
+        assertEquals(320, governor.getProcessingSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void initialSizeMustExist() {
+        new ProcessingGovernor(30, SIZES, 5);
+    }
+}
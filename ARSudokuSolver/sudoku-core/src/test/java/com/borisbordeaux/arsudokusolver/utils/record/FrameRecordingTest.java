@@ -0,0 +1,72 @@
+package com.borisbordeaux.arsudokusolver.utils.record;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class FrameRecordingTest {
+
+    private static ByteBuffer plane(int rowStride, int height, int seed) {
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * height);
+        for (int i = 0; i < rowStride * height; i++) {
+            plane.put((byte) (i * 7 + seed));
+        }
+        plane.rewind();
+        return plane;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        File file = File.createTempFile("recording", ".frames");
+        file.deleteOnExit();
+
+        //rows of 6 pixels padded to 8 bytes
+        try (FrameRecorder recorder = new FrameRecorder(file, 2)) {
+            for (int frame = 0; frame < 2; frame++) {
+                ByteBuffer plane = plane(8, 4, frame);
+                //the recorder waits for a free buffer between the frames
+                while (!recorder.record(plane, 8, 6, 4, 1000L * frame)) {
+                    Thread.yield();
+                }
+                assertEquals(0, plane.position());
+            }
+        }
+
+        try (FrameReplayReader reader = new FrameReplayReader(file)) {
+            for (int frame = 0; frame < 2; frame++) {
+                assertTrue(reader.next());
+                assertEquals(1000L * frame, reader.getTimestamp());
+                assertEquals(6, reader.getWidth());
+                assertEquals(4, reader.getHeight());
+
+                //the padding is not recorded
+                ByteBuffer luminance = reader.getLuminance();
+                ByteBuffer expected = plane(8, 4, frame);
+                assertEquals(24, luminance.remaining());
+                for (int row = 0; row < 4; row++) {
+                    for (int col = 0; col < 6; col++) {
+                        assertEquals(expected.get(row * 8 + col), luminance.get(row * 6 + col));
+                    }
+                }
+            }
+            assertFalse(reader.next());
+
+            reader.rewind();
+            assertTrue(reader.next());
+            assertEquals(0, reader.getTimestamp());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void notARecording() throws IOException {
+        File file = File.createTempFile("recording", ".frames");
+        file.deleteOnExit();
+        new FrameReplayReader(file).close();
+    }
+}
@@ -20,6 +20,7 @@ def main():
     # uncomment the line you want to execute
     # generate_dataset_using_ttf(nbr=30, save_files=True)
     # main_train_model(from_files=True)
+    # save_fp16_graph()
     # test_loaded_model()
     # test_noise()
 
@@ -348,6 +349,28 @@ def save_fit_model(model_ai):
     tf.io.write_graph(frozen_func.graph, "frozen_models", "frozen_graph.pb", as_text=False)
     # tf.io.write_graph(frozen_func.graph, "frozen_models", "frozen_graph.pbtxt", as_text=True)
 
+    save_fp16_graph()
+
+
+def save_fp16_graph(frozen_path="./frozen_models/frozen_graph.pb", output_name="frozen_graph_fp16.pb"):
+    """
+    Stores the weights of the frozen graph as 16 bits floats.
+    The graph is half the size to read and OpenCV converts
+    the weights back to 32 bits floats when loading the net.
+    save_fp16_graph.py does the same conversion without tensorflow
+    """
+    graph_def = tf.compat.v1.GraphDef()
+    with tf.io.gfile.GFile(frozen_path, "rb") as f:
+        graph_def.ParseFromString(f.read())
+
+    for node in graph_def.node:
+        if node.op == "Const" and node.attr["dtype"].type == tf.float32.as_datatype_enum:
+            weights = tf.make_ndarray(node.attr["value"].tensor).astype(np.float16)
+            node.attr["value"].tensor.CopyFrom(tf.make_tensor_proto(weights, dtype=tf.float16))
+            node.attr["dtype"].type = tf.float16.as_datatype_enum
+
+    tf.io.write_graph(graph_def, "frozen_models", output_name, as_text=False)
+
 
 def test_ai(model_ai, x_test, y_test):
     cv2.namedWindow("test")
@@ -0,0 +1,156 @@
+# -*- coding: utf-8 -*
+"""
+Same conversion as save_fp16_graph() of AI_ARSudokuSolver_Keras.py, without tensorflow.
+The frozen graph is read and written as raw protobuf, the float32 Const nodes get
+their dtype and their weights stored as float16, all the other fields are kept as is.
+Usage: python save_fp16_graph.py frozen_graph.pb frozen_graph_fp16.pb
+"""
+import struct
+import sys
+
+DT_FLOAT = 1
+DT_HALF = 19
+
+
+def read_varint(data, i):
+    result = shift = 0
+    while True:
+        byte = data[i]
+        i += 1
+        result |= (byte & 0x7f) << shift
+        shift += 7
+        if byte < 0x80:
+            return result, i
+
+
+def write_varint(value):
+    out = bytearray()
+    while True:
+        byte = value & 0x7f
+        value >>= 7
+        if value:
+            out.append(byte | 0x80)
+        else:
+            out.append(byte)
+            return bytes(out)
+
+
+def read_fields(data):
+    # yields the number, the wire type and the value of each field of a message
+    i = 0
+    while i < len(data):
+        key, i = read_varint(data, i)
+        number, wire_type = key >> 3, key & 7
+        if wire_type == 0:
+            value, i = read_varint(data, i)
+        elif wire_type == 1:
+            value, i = data[i:i + 8], i + 8
+        elif wire_type == 2:
+            length, i = read_varint(data, i)
+            value, i = data[i:i + length], i + length
+        elif wire_type == 5:
+            value, i = data[i:i + 4], i + 4
+        else:
+            raise ValueError('unsupported wire type ' + str(wire_type))
+        yield number, wire_type, value
+
+
+def write_field(number, wire_type, value):
+    key = write_varint(number << 3 | wire_type)
+    if wire_type == 0:
+        return key + write_varint(value)
+    if wire_type == 2:
+        return key + write_varint(len(value)) + value
+    return key + value
+
+
+def convert_tensor(tensor):
+    # TensorProto: 1 dtype, 4 tensor_content, 5 float_val, 13 half_val
+    out = b''
+    floats = []
+    for number, wire_type, value in read_fields(tensor):
+        if number == 1:
+            out += write_field(1, 0, DT_HALF)
+        elif number == 4:
+            count = len(value) // 4
+            halves = struct.pack('<%de' % count, *struct.unpack('<%df' % count, value))
+            out += write_field(4, 2, halves)
+        elif number == 5:
+            if wire_type == 2:
+                floats += struct.unpack('<%df' % (len(value) // 4), value)
+            else:
+                floats += struct.unpack('<f', value)
+        else:
+            out += write_field(number, wire_type, value)
+    if floats:
+        # half_val holds the bits of the halves in int32
+        bits = struct.unpack('<%dH' % len(floats), struct.pack('<%de' % len(floats), *floats))
+        out += write_field(13, 2, b''.join(write_varint(b) for b in bits))
+    return out
+
+
+def convert_attr(attr):
+    # NodeDef.AttrEntry: 1 key, 2 AttrValue with 6 type and 8 tensor
+    out = b''
+    key = None
+    for number, wire_type, value in read_fields(attr):
+        if number == 1:
+            key = value
+            out += write_field(number, wire_type, value)
+            continue
+        converted = b''
+        for attr_number, attr_wire_type, attr_value in read_fields(value):
+            if key == b'dtype' and attr_number == 6 and attr_value == DT_FLOAT:
+                converted += write_field(6, 0, DT_HALF)
+            elif key == b'value' and attr_number == 8:
+                converted += write_field(8, 2, convert_tensor(attr_value))
+            else:
+                converted += write_field(attr_number, attr_wire_type, attr_value)
+        out += write_field(number, wire_type, converted)
+    return out
+
+
+def is_float_const(node):
+    # NodeDef: 2 op, 5 attr
+    op = None
+    dtype = None
+    for number, _, value in read_fields(node):
+        if number == 2:
+            op = value
+        elif number == 5:
+            entry = {n: v for n, _, v in read_fields(value)}
+            if entry.get(1) == b'dtype':
+                dtype = {n: v for n, _, v in read_fields(entry[2])}.get(6)
+    return op == b'Const' and dtype == DT_FLOAT
+
+
+def convert_node(node):
+    if not is_float_const(node):
+        return node
+    out = b''
+    for number, wire_type, value in read_fields(node):
+        if number == 5:
+            out += write_field(number, wire_type, convert_attr(value))
+        else:
+            out += write_field(number, wire_type, value)
+    return out
+
+
+def main(frozen_path, output_path):
+    with open(frozen_path, 'rb') as f:
+        graph = f.read()
+
+    # GraphDef: 1 node
+    out = b''
+    for number, wire_type, value in read_fields(graph):
+        if number == 1:
+            value = convert_node(value)
+        out += write_field(number, wire_type, value)
+
+    with open(output_path, 'wb') as f:
+        f.write(out)
+    print(frozen_path, len(graph), 'bytes ->', output_path, len(out), 'bytes')
+
+
+if __name__ == '__main__':
+    main(sys.argv[1], sys.argv[2])